@@ -1,11 +1,84 @@
+import cs2030.simulator.AnalyticModel;
+import cs2030.simulator.CustomerClasses;
+import cs2030.simulator.DigitalTwin;
+import cs2030.simulator.Distribution;
+import cs2030.simulator.GroupSizes;
+import cs2030.simulator.LockstepEngine;
 import cs2030.simulator.Manager;
+import cs2030.simulator.Metric;
+import cs2030.simulator.RateProfile;
+import cs2030.simulator.RareEventEstimator;
+import cs2030.simulator.ReplicationController;
+import cs2030.simulator.RunStatistics;
+import cs2030.simulator.SampleStatistics;
+import cs2030.simulator.SimulationConfig;
+import cs2030.simulator.SimulationService;
+import cs2030.simulator.StaffingOptimizer;
+import cs2030.simulator.TimeSeriesRecorder;
+import cs2030.simulator.SteadyStateEstimator;
+import cs2030.simulator.SurrogateModel;
+import cs2030.simulator.ValidationReport;
+import cs2030.simulator.WorkerPool;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Main class drives the simulation: takes in inputs, generates Manager, makes the
  * manager do its operations and finally retrieves a log of the day's events and
  * statistics from the Manager.
+ * The options "--arrivals=spec" and "--service=spec" draw the inter-arrival and
+ * service times from other distributions, e.g. "--service=lognormal:1,2" (see
+ * Distribution.parse), in any of the modes that simulate the shop; "--rates=spec"
+ * makes the arrival rate vary over the day, e.g. "--rates=constant:24,0,1,12,3"
+ * (see RateProfile.parse); "--classes=spec" serves customers by priority class,
+ * e.g. "--classes=loyal:1,regular:4" (see CustomerClasses.parse), and the
+ * simulation then ends with the statistics of every class; "--groups=spec" makes
+ * customers arrive in groups, e.g. "--groups=geometric:3" (see GroupSizes.parse).
+ * The first other cli argument may pick another mode of running the same inputs:
+ * "replicate relativeHalfWidth [maxReplications]" replicates the simulation
+ * until the confidence intervals of its statistics are narrow enough;
+ * "steady [numBatches]" estimates the steady-state average wait out of one long run;
+ * "analytic" solves a plain shop exactly and "validate [relativeHalfWidth
+ * [maxReplications [tolerance]]]" checks the simulator against that solution;
+ * "lockstep numReplications" advances that many replications together;
+ * "pool numWorkers numReplications" runs the replications on worker JVMs;
+ * "ipa" simulates the day once and prints how its average wait responds to
+ * lambda and mu; "rare [relativeHalfWidth [effort [maxRepetitions]]]" estimates
+ * the tiny probability that customers leave by splitting; "staff maxWait maxServers
+ * maxSelfServers maxQmax [tolerance [maxFractionLeft]]" finds the cheapest shop up
+ * to that size whose average wait stays under maxWait while at most
+ * maxFractionLeft of the customers, by default 1%, leave; "timeseries bucketWidth
+ * maxBuckets [file]" prints the queue length, busy and resting servers over the
+ * day as CSV, or writes them to a binary file; "twin [port]" follows a live shop, reading
+ * arrival and service records after the inputs, or from connections to the
+ * local port, and answering each arrival with its predicted wait (see
+ * DigitalTwin); "compress file [threads]" simulates the day once, writing its
+ * logs to a compressed file indexed by time and printing only the statistics
+ * (see CompressedLog for reading a window of the day back); "serve [port
+ * [maxRuns]]" keeps simulating shops asked for over HTTP on the local port,
+ * with the inputs read in as the defaults of what a request leaves out (see
+ * SimulationService); "surrogate initialPoints maxExtraPoints [targetStandardError
+ * [replicationsPerPoint]]" fits a metamodel of the average wait over the box
+ * between the two lines "lambda mu numServers qmax pRest pGreedy" that follow
+ * the inputs, and then answers each such line that follows with the expected
+ * average wait there and its standard error (see SurrogateModel).
  */
 public class Main {
 
@@ -15,31 +88,429 @@ public class Main {
      * @param args Cli arguments
      */
     public static void main(String[] args) {
-        Scanner sc = new Scanner(System.in);
-        int seed = sc.nextInt();
-        int numServers = sc.nextInt();
-        int numSelfServers = sc.nextInt();
-        int qmax = sc.nextInt();
-        int numArrivalEvents = sc.nextInt(); // aka number of customers expected to enter
-        double lambda = sc.nextDouble();
-        double mu = sc.nextDouble();
-        double rho = sc.nextDouble();
-        double probResting = sc.nextDouble();
-        double probGreedy = sc.nextDouble();
-        assert (lambda > 0 && mu > 0 && rho > 0);
-
-        Manager myManager = new Manager(seed,
-            numServers,
-            numSelfServers,
-            qmax,
-            numArrivalEvents,
-            lambda,
-            mu,
-            rho,
-            probResting,
-            probGreedy);
-        sc.close();
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        SimulationConfig config = SimulationConfig.read(new Scanner(readInputs(in)));
+        assert (config.getLambda() > 0 && config.getMu() > 0 && config.getRho() > 0);
+        config = withDistributions(config, args);
+        args = Arrays.stream(args).filter(a -> !a.startsWith("--")).toArray(String[]::new);
+
+        String mode = args.length > 0 ? args[0] : "simulate";
+        switch (mode) {
+            case "replicate":
+                replicate(config, args);
+                break;
+            case "steady":
+                int numBatches = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+                System.out.println(new SteadyStateEstimator(config, numBatches, 0.95).run());
+                break;
+            case "analytic":
+                System.out.println(AnalyticModel.solve(config));
+                break;
+            case "validate":
+                validate(config, args);
+                break;
+            case "lockstep":
+                lockstep(config, Integer.parseInt(args[1]));
+                break;
+            case "pool":
+                pool(config, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                break;
+            case "rare":
+                rare(config, args);
+                break;
+            case "staff":
+                staff(config, args);
+                break;
+            case "timeseries":
+                timeSeries(config, args);
+                break;
+            case "ipa":
+                sensitivities(config);
+                break;
+            case "twin":
+                twin(config, args, in);
+                break;
+            case "compress":
+                compress(config, args);
+                break;
+            case "serve":
+                serve(config, args);
+                break;
+            case "surrogate":
+                surrogate(config, args, in);
+                break;
+            default:
+                simulate(config);
+        }
+    }
+
+    /**
+     * Reads the ten inputs, over as many lines as they take, and no further, so
+     * that whatever follows them is left to be read.
+     *
+     * @param in the standard input.
+     * @return the inputs, separated by spaces.
+     */
+    private static String readInputs(BufferedReader in) {
+        StringBuilder inputs = new StringBuilder();
+        int numInputs = 0;
+        try {
+            String line;
+            while (numInputs < 10 && (line = in.readLine()) != null) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty()) {
+                    numInputs += trimmed.split("\\s+").length;
+                    inputs.append(trimmed).append(' ');
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read the inputs", e);
+        }
+        return inputs.toString();
+    }
+
+    /**
+     * Applies the distribution, rate, class and group options among the cli
+     * arguments to the inputs read in.
+     *
+     * @param config the inputs read in.
+     * @param args   Cli arguments
+     * @return the inputs with the distributions asked for.
+     */
+    private static SimulationConfig withDistributions(SimulationConfig config,
+                                                      String[] args) {
+        Distribution interArrivalTimes = config.getInterArrivalTimes();
+        Distribution serviceTimes = config.getServiceTimes();
+        RateProfile arrivalRates = null;
+        for (String arg : args) {
+            if (arg.startsWith("--groups=")) {
+                config = config.withGroupSizes(
+                    GroupSizes.parse(arg.substring("--groups=".length())));
+            }
+            if (arg.startsWith("--classes=")) {
+                config = config.withCustomerClasses(
+                    CustomerClasses.parse(arg.substring("--classes=".length())));
+            }
+            if (arg.startsWith("--arrivals=")) {
+                interArrivalTimes = Distribution.parse(arg.substring("--arrivals=".length()));
+            } else if (arg.startsWith("--service=")) {
+                serviceTimes = Distribution.parse(arg.substring("--service=".length()));
+            } else if (arg.startsWith("--rates=")) {
+                arrivalRates = RateProfile.parse(arg.substring("--rates=".length()));
+            }
+        }
+        if (arrivalRates != null) {
+            config = config.withArrivalRates(arrivalRates);
+        }
+        return interArrivalTimes == config.getInterArrivalTimes()
+                   && serviceTimes == config.getServiceTimes()
+                   ? config : config.withDistributions(interArrivalTimes, serviceTimes);
+    }
+
+    /**
+     * Simulates the day once and prints its logs, which are streamed out while
+     * the day goes on rather than kept until the end.
+     *
+     * @param config the inputs read in.
+     */
+    private static void simulate(SimulationConfig config) {
+        Manager myManager = new Manager(config);
+        myManager.streamLogsTo(System.out);
+        myManager.operate();
+        System.out.println(myManager.showLogs());
+        if (config.getCustomerClasses() != null) {
+            System.out.println(myManager.getStatistics().showClasses());
+        }
+    }
+
+    /**
+     * Fits a metamodel of the average wait over a box of shops, then answers
+     * queries about points of the box until the standard input ends.
+     *
+     * @param config the inputs read in, whose seed, numSelfServers,
+     *               numArrivalEvents and rho every shop of the box keeps.
+     * @param args   surrogate initialPoints maxExtraPoints [targetStandardError
+     *               [replicationsPerPoint]]
+     * @param in     the standard input, past the inputs.
+     */
+    private static void surrogate(SimulationConfig config, String[] args, BufferedReader in) {
+        double targetStandardError = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        int replicationsPerPoint = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        try {
+            double[] lower = readPoint(in);
+            double[] upper = readPoint(in);
+            SurrogateModel model = new SurrogateModel(config, lower, upper,
+                Metric.AVERAGE_WAIT, replicationsPerPoint);
+            model.sample(Integer.parseInt(args[1]));
+            model.refine(Integer.parseInt(args[2]), targetStandardError);
+            System.out.println(model);
+            double[] x;
+            while ((x = readPoint(in)) != null) {
+                System.out.println(model.predict(x[0], x[1], (int) x[2], (int) x[3], x[4],
+                    x[5]));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read the points", e);
+        }
+    }
+
+    /**
+     * Reads the next line of six numbers, skipping blank lines.
+     *
+     * @return the numbers, null at the end of the input.
+     */
+    private static double[] readPoint(BufferedReader in) throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+        } while (line != null && line.isBlank());
+        return line == null ? null
+                   : Arrays.stream(line.trim().split("\\s+")).mapToDouble(Double::parseDouble)
+                         .toArray();
+    }
+
+    /**
+     * Serves simulations over HTTP until the process is stopped, and prints the
+     * port served on.
+     *
+     * @param config the inputs read in, the defaults of the requests.
+     * @param args   serve [port [maxRuns]]
+     */
+    private static void serve(SimulationConfig config, String[] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        SimulationService service = args.length > 2
+                                        ? new SimulationService(config,
+                                            Integer.parseInt(args[2]))
+                                        : new SimulationService(config);
+        try {
+            System.out.println("serving on port " + service.start(port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot serve", e);
+        }
+    }
+
+    /**
+     * Simulates the day once, compressing its logs into a file while the day goes
+     * on, and prints its statistics.
+     *
+     * @param config the inputs read in.
+     * @param args   compress file [threads]
+     */
+    private static void compress(SimulationConfig config, String[] args) {
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                          : Runtime.getRuntime().availableProcessors();
+        Manager myManager = new Manager(config);
+        try {
+            myManager.compressLogsTo(Paths.get(args[1]), threads);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot write the logs", e);
+        }
         myManager.operate();
         System.out.println(myManager.showLogs());
+        if (config.getCustomerClasses() != null) {
+            System.out.println(myManager.getStatistics().showClasses());
+        }
+    }
+
+    /**
+     * Follows a live shop, reading its records from the rest of the standard
+     * input, after which the day ends and its statistics are printed, or from
+     * connections to a port on the loopback interface, one after the other and
+     * for as long as the process runs.
+     *
+     * @param config the inputs read in.
+     * @param args   twin [port]
+     * @param in     the standard input, past the inputs.
+     */
+    private static void twin(SimulationConfig config, String[] args, BufferedReader in) {
+        DigitalTwin twin = new DigitalTwin(config);
+        try {
+            if (args.length < 2) {
+                twin.serve(in, new BufferedWriter(
+                    new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)));
+                System.out.println(twin.finish());
+                return;
+            }
+            try (ServerSocket server = new ServerSocket(Integer.parseInt(args[1]), 1,
+                InetAddress.getLoopbackAddress())) {
+                while (true) {
+                    try (Socket client = server.accept()) {
+                        client.setTcpNoDelay(true);
+                        twin.serve(new BufferedReader(new InputStreamReader(
+                                client.getInputStream(), StandardCharsets.US_ASCII)),
+                            new BufferedWriter(new OutputStreamWriter(
+                                client.getOutputStream(), StandardCharsets.US_ASCII)));
+                    } catch (IOException e) { // the client went away, wait for the next
+                        System.err.println("twin connection lost: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot run the twin", e);
+        }
+    }
+
+    /**
+     * Simulates the day once and prints its statistics along with the derivatives
+     * of the average wait with respect to lambda and mu.
+     *
+     * @param config the inputs read in.
+     */
+    private static void sensitivities(SimulationConfig config) {
+        Manager myManager = new Manager(config);
+        myManager.trackSensitivities();
+        myManager.operate();
+        System.out.println(myManager.getStatistics());
+        System.out.println(myManager.getSensitivities());
+    }
+
+    /**
+     * Estimates the probability that customers leave a shop with long queues, by
+     * multilevel splitting, and prints the estimates.
+     *
+     * @param config the inputs read in.
+     * @param args   rare [relativeHalfWidth [effort [maxRepetitions]]]
+     */
+    private static void rare(SimulationConfig config, String[] args) {
+        double relativeHalfWidth = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+        int effort = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int maxRepetitions = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        System.out.println(new RareEventEstimator(config, relativeHalfWidth, effort,
+            maxRepetitions).run());
+    }
+
+    /**
+     * Searches every shop with up to the given numbers of servers, self-checkout
+     * servers and qmax (at least 1) for the cheapest one whose average wait stays
+     * under the bound while at most maxFractionLeft of the customers leave, by
+     * default 1%, and prints the decisions made.
+     *
+     * @param config the inputs read in, of which the staffing is varied.
+     * @param args   staff maxWait maxServers maxSelfServers maxQmax [tolerance
+     *               [maxFractionLeft]]
+     */
+    private static void staff(SimulationConfig config, String[] args) {
+        double maxWait = Double.parseDouble(args[1]);
+        double tolerance = args.length > 5 ? Double.parseDouble(args[5]) : 0.05 * maxWait;
+        double maxFractionLeft = args.length > 6 ? Double.parseDouble(args[6]) : 0.01;
+        List<SimulationConfig> candidates = new ArrayList<>();
+        for (int servers = 0; servers <= Integer.parseInt(args[2]); servers++) {
+            for (int selfServers = 0; selfServers <= Integer.parseInt(args[3]); selfServers++) {
+                for (int qmax = 1; qmax <= Integer.parseInt(args[4]); qmax++) {
+                    if (servers + selfServers > 0) {
+                        candidates.add(new SimulationConfig(config.getSeed(), servers,
+                            selfServers, qmax, config.getNumArrivalEvents(),
+                            config.getLambda(), config.getMu(), config.getRho(),
+                            config.getPRest(), config.getPGreedy()));
+                    }
+                }
+            }
+        }
+        System.out.println(new StaffingOptimizer(candidates, StaffingOptimizer::staffingCost,
+            new Metric[] {Metric.AVERAGE_WAIT, Metric.FRACTION_LEFT},
+            new double[] {maxWait, maxFractionLeft},
+            new double[] {tolerance, 0.2 * maxFractionLeft}, 0.05, 1000).run());
+    }
+
+    /**
+     * Simulates the day once and exports the time series of the number of
+     * customers waiting, of busy servers and of resting servers.
+     *
+     * @param config the inputs read in.
+     * @param args   timeseries bucketWidth maxBuckets [file]
+     */
+    private static void timeSeries(SimulationConfig config, String[] args) {
+        Manager myManager = new Manager(config);
+        myManager.recordTimeSeries(Double.parseDouble(args[1]), Integer.parseInt(args[2]));
+        myManager.operate();
+        TimeSeriesRecorder series = myManager.getTimeSeries();
+        try {
+            if (args.length > 3) {
+                try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(args[3]))) {
+                    series.writeBinary(out);
+                }
+            } else {
+                series.writeCsv(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot export the time series", e);
+        }
+    }
+
+    /**
+     * Replicates the day until the average wait and fraction of customers that left
+     * are precise enough, and prints the confidence intervals.
+     *
+     * @param config the inputs read in.
+     * @param args   replicate relativeHalfWidth [maxReplications]
+     */
+    private static void replicate(SimulationConfig config, String[] args) {
+        double relativeHalfWidth = args.length > 1 ? Double.parseDouble(args[1]) : 0.05;
+        int maxReplications = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        ReplicationController controller = new ReplicationController(config,
+            relativeHalfWidth, maxReplications, Metric.AVERAGE_WAIT, Metric.FRACTION_LEFT);
+        System.out.println(controller.run());
+    }
+
+    /**
+     * Runs the replications of a small shop in lock-step and prints the confidence
+     * intervals of the average wait and fraction of customers that left.
+     *
+     * @param config          the inputs read in.
+     * @param numReplications how many replications to run.
+     */
+    private static void lockstep(SimulationConfig config, int numReplications) {
+        printSummary(new LockstepEngine(config, numReplications).run());
+    }
+
+    /**
+     * Runs the replications of a shop on worker JVMs and prints the confidence
+     * intervals of the average wait and fraction of customers that left.
+     *
+     * @param config          the inputs read in.
+     * @param numWorkers      how many worker JVMs to spawn.
+     * @param numReplications how many replications to run.
+     */
+    private static void pool(SimulationConfig config, int numWorkers, int numReplications) {
+        List<SimulationConfig> units = new ArrayList<>();
+        for (int r = 0; r < numReplications; r++) {
+            units.add(config.forReplication(r));
+        }
+        printSummary(new WorkerPool(numWorkers).run(units));
+    }
+
+    private static void printSummary(RunStatistics[] replications) {
+        SampleStatistics averageWait = new SampleStatistics();
+        SampleStatistics fractionLeft = new SampleStatistics();
+        for (RunStatistics stats : replications) {
+            averageWait.add(Metric.AVERAGE_WAIT.of(stats));
+            fractionLeft.add(Metric.FRACTION_LEFT.of(stats));
+        }
+        System.out.println(Metric.AVERAGE_WAIT + ": " + String.format("%.3f +/- %.3f",
+            averageWait.getMean(), averageWait.halfWidth(0.95)));
+        System.out.println(Metric.FRACTION_LEFT + ": " + String.format("%.3f +/- %.3f",
+            fractionLeft.getMean(), fractionLeft.halfWidth(0.95)));
+        System.out.println("replications: " + replications.length);
+    }
+
+    /**
+     * Checks the simulator against the exact solution of a plain shop, and exits
+     * with status 1 if they disagree.
+     *
+     * @param config the inputs read in.
+     * @param args   validate [relativeHalfWidth [maxReplications [tolerance]]]
+     */
+    private static void validate(SimulationConfig config, String[] args) {
+        double relativeHalfWidth = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+        int maxReplications = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 0.02;
+        ValidationReport report = AnalyticModel.validate(config, relativeHalfWidth,
+            maxReplications, tolerance);
+        System.out.println(report);
+        if (!report.passed()) {
+            System.exit(1);
+        }
     }
 }
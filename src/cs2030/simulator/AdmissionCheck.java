@@ -0,0 +1,99 @@
+package cs2030.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * The AdmissionCheck guards a SimulationService against requests that would
+ * hang a run, exhaust the memory of the JVM or read its files: each must be
+ * turned away with 400 before it is admitted. It serves with room for a single
+ * run, sends every bad request twice, and fails unless each is turned away and
+ * a good request is still admitted and answered with its statistics afterwards,
+ * so that no bad request holds on to the only admission.
+ * Run it after compiling as "java -cp classes cs2030.simulator.AdmissionCheck";
+ * it exits with status 1 if any check fails.
+ */
+public class AdmissionCheck {
+
+    private static final String[] BAD_REQUESTS = {
+        "{\"rates\": \"constant:24,0,0\"}", // rates all 0, no arrival ever
+        "{\"rates\": \"constant:24,1,3\"}", // first segment not at 0
+        "{\"rates\": \"constant:24,0,-1,12,2\"}", // negative rate
+        "{\"numServers\": 200000000}", // too many servers to allocate
+        "{\"numServers\": 1000, \"qmax\": 2000000000}", // room for too many customers
+        "{\"numServers\": -1}",
+        "{\"pRest\": \"NaN\"}",
+        "{\"classes\": \"a:0,b:0\"}", // shares all 0
+        "{\"service\": \"exponential:-1\"}",
+        "{\"service\": \"empirical:/etc/passwd\"}"
+    };
+    private static final String GOOD_REQUEST = "{\"numArrivalEvents\": 100}";
+
+    private AdmissionCheck() {
+    }
+
+    /**
+     * Runs every check and exits with status 1 if any of them fails.
+     *
+     * @param args not used.
+     * @throws IOException if the service can't be reached.
+     */
+    public static void main(String[] args) throws IOException {
+        SimulationConfig defaults = SimulationConfig.read(
+            new Scanner("1 2 1 2 1000 1.0 1.0 1.0 0.1 0.1"));
+        SimulationService service = new SimulationService(defaults, 1);
+        int port = service.start(0);
+        boolean passed = true;
+        try {
+            for (int round = 0; round < 2; round++) {
+                for (String request : BAD_REQUESTS) {
+                    int status = post(port, request, new StringBuilder());
+                    boolean ok = status == 400;
+                    passed &= ok;
+                    System.out.println((ok ? "OK   " : "FAIL ") + status + " " + request);
+                }
+            }
+            StringBuilder answer = new StringBuilder();
+            int status = post(port, GOOD_REQUEST, answer);
+            boolean ok = status == 200 && answer.toString().startsWith("[");
+            passed &= ok;
+            System.out.println((ok ? "OK   " : "FAIL ") + status + " " + GOOD_REQUEST);
+        } finally {
+            service.stop();
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Posts a shop to run, waiting at most a few seconds for the answer.
+     *
+     * @return the status of the answer, whose body is appended to answer.
+     */
+    private static int post(int port, String body, StringBuilder answer) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+            new URL("http://127.0.0.1:" + port + "/run").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400
+                                  ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                answer.append(new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+            }
+        }
+        connection.disconnect();
+        return status;
+    }
+}
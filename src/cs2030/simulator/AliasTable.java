@@ -0,0 +1,76 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * An AliasTable picks one of n outcomes with given probabilities in O(1) per
+ * draw (Walker's alias method, built with Vose's O(n) algorithm): a column is
+ * picked uniformly, and then either the column itself or its alias, by comparing
+ * one uniform variate against the column's threshold.
+ */
+class AliasTable {
+
+    private final double[] thresholds;
+    private final int[] aliases;
+
+    /**
+     * Builds the table.
+     *
+     * @param weights the non-negative weights of the outcomes, not all 0.
+     */
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        for (double w : weights) {
+            assert w >= 0;
+            total += w;
+        }
+        assert total > 0;
+        this.thresholds = new double[n];
+        this.aliases = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[numSmall++] = i;
+            } else {
+                large[numLarge++] = i;
+            }
+        }
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+            this.thresholds[less] = scaled[less];
+            this.aliases[less] = more;
+            scaled[more] += scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[numSmall++] = more;
+            } else {
+                large[numLarge++] = more;
+            }
+        }
+        // what is left over is 1 up to rounding errors:
+        while (numLarge > 0) {
+            this.thresholds[large[--numLarge]] = 1;
+        }
+        while (numSmall > 0) {
+            this.thresholds[small[--numSmall]] = 1;
+        }
+    }
+
+    /**
+     * Picks an outcome.
+     *
+     * @param rng the random stream of the run drawing.
+     * @return the index of the outcome.
+     */
+    int sample(Random rng) {
+        double u = rng.nextDouble() * this.thresholds.length;
+        int column = (int) u;
+        return u - column < this.thresholds[column] ? column : this.aliases[column];
+    }
+}
@@ -0,0 +1,228 @@
+package cs2030.simulator;
+
+import java.util.Arrays;
+
+/**
+ * The AnalyticModel works out the steady-state performance of plain shops
+ * instantly. A shop is plain when it has no self-checkout servers, its servers
+ * never rest, none of its Customers are greedy and its inter-arrival and service
+ * times are exponential: every server then serves its own queue of at most qmax
+ * Customers, at exponential rate mu, while Customers arrive at exponential rate
+ * lambda and go to the first idle server, else to the first server whose queue
+ * isn't full, else leave.
+ * Such a shop is an M/M/1/K queue (K = qmax + 1) for a single server and an
+ * Erlang loss system (M/M/c/c) when nobody may queue. Otherwise the Markov
+ * chain of the per-server queue lengths is solved numerically while it is small
+ * enough, and the shared-queue M/M/c/K with K = c + c * qmax is used as an
+ * approximation beyond that.
+ */
+public class AnalyticModel {
+
+    static final int MAX_STATES = 20_000;
+    private static final double TOLERANCE = 1e-10;
+    private static final int MAX_SWEEPS = 20_000;
+
+    private AnalyticModel() {
+    }
+
+    /**
+     * Checks if the shop is plain enough for the AnalyticModel.
+     *
+     * @param config the shop.
+     * @return true if the shop can be solved.
+     */
+    public static boolean applies(SimulationConfig config) {
+        return config.isMarkovian() && config.getNumSelfServers() == 0
+                   && config.getPRest() == 0 && config.getPGreedy() == 0 && config.getNumServers() > 0
+                   && config.getQmax() >= 0;
+    }
+
+    /**
+     * Solves a plain shop.
+     *
+     * @param config the shop, which the AnalyticModel must apply to.
+     * @return the steady-state performance of the shop.
+     * @throws IllegalArgumentException if the shop isn't plain.
+     */
+    public static AnalyticSolution solve(SimulationConfig config) {
+        if (!applies(config)) {
+            throw new IllegalArgumentException("not a plain M/M/c/K shop: " + config);
+        }
+        int c = config.getNumServers();
+        int qmax = config.getQmax();
+        double lambda = config.getLambda();
+        double mu = config.getMu();
+        if (qmax == 0) {
+            return erlangLoss(c, lambda, mu);
+        } else if (c == 1) {
+            return sharedQueue(1, qmax + 1, lambda, mu, true, "M/M/1/K");
+        } else if (Math.pow(qmax + 2, c) <= MAX_STATES) {
+            return perServerQueues(c, qmax, lambda, mu);
+        } else {
+            return sharedQueue(c, c + c * qmax, lambda, mu, false, "M/M/c/K");
+        }
+    }
+
+    /**
+     * Erlang's loss formula, worked out with the stable recursion
+     * B(k) = a B(k - 1) / (k + a B(k - 1)).
+     */
+    private static AnalyticSolution erlangLoss(int c, double lambda, double mu) {
+        double a = lambda / mu;
+        double blocking = 1;
+        for (int k = 1; k <= c; k++) {
+            blocking = a * blocking / (k + a * blocking);
+        }
+        return new AnalyticSolution(0, 0, lambda * (1 - blocking), blocking, true,
+            "Erlang loss (M/M/c/c)");
+    }
+
+    /**
+     * M/M/c/K with a single queue shared by all c servers, K in the system at most.
+     * The stationary probabilities are built up in log space since a^n / n! may
+     * overflow for large shops.
+     */
+    private static AnalyticSolution sharedQueue(int c, int capacity, double lambda,
+                                                double mu, boolean exact, String method) {
+        double logA = Math.log(lambda / mu);
+        double[] logTerms = new double[capacity + 1];
+        double max = 0;
+        for (int n = 1; n <= capacity; n++) {
+            logTerms[n] = logTerms[n - 1] + logA - Math.log(Math.min(n, c));
+            max = Math.max(max, logTerms[n]);
+        }
+        double total = 0;
+        double waiting = 0;
+        for (int n = 0; n <= capacity; n++) {
+            double p = Math.exp(logTerms[n] - max);
+            total += p;
+            waiting += p * Math.max(n - c, 0);
+        }
+        double blocking = Math.exp(logTerms[capacity] - max) / total;
+        double queueLength = waiting / total;
+        double throughput = lambda * (1 - blocking);
+        return new AnalyticSolution(queueLength / throughput, queueLength, throughput,
+            blocking, exact, method);
+    }
+
+    /**
+     * Solves the Markov chain of the number of Customers at each server, with the
+     * routing of the shop, by Gauss-Seidel iteration on the balance equations.
+     * A state is encoded in mixed radix: server i holds digit i, base qmax + 2.
+     */
+    private static AnalyticSolution perServerQueues(int c, int qmax, double lambda,
+                                                    double mu) {
+        int base = qmax + 2;
+        int capacity = qmax + 1; // one being served plus a full queue
+        int numStates = (int) Math.pow(base, c);
+        int[] weights = new int[c];
+        weights[0] = 1;
+        for (int i = 1; i < c; i++) {
+            weights[i] = weights[i - 1] * base;
+        }
+        int[] digits = new int[c];
+        int[] routes = new int[numStates]; // where an arrival goes in each state
+        for (int s = 0; s < numStates; s++) {
+            decode(s, base, digits);
+            routes[s] = route(digits, capacity);
+        }
+        double[] pi = new double[numStates];
+        Arrays.fill(pi, 1.0 / numStates);
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            double largestChange = 0;
+            double total = 0;
+            for (int s = 0; s < numStates; s++) {
+                double in = 0;
+                double out = routes[s] >= 0 ? lambda : 0;
+                int rest = s;
+                for (int i = 0; i < c; i++) {
+                    int digit = rest % base;
+                    rest /= base;
+                    if (digit > 0) {
+                        out += mu;
+                        // an arrival routed to server i from the state with one less:
+                        if (routes[s - weights[i]] == i) {
+                            in += lambda * pi[s - weights[i]];
+                        }
+                    }
+                    if (digit < capacity) { // a departure from the state with one more
+                        in += mu * pi[s + weights[i]];
+                    }
+                }
+                double updated = in / out;
+                largestChange = Math.max(largestChange, Math.abs(updated - pi[s]));
+                pi[s] = updated;
+                total += updated;
+            }
+            for (int s = 0; s < numStates; s++) {
+                pi[s] /= total;
+            }
+            if (largestChange / total < TOLERANCE) {
+                break;
+            }
+        }
+        double blocking = 0;
+        double queueLength = 0;
+        for (int s = 0; s < numStates; s++) {
+            decode(s, base, digits);
+            if (routes[s] < 0) {
+                blocking += pi[s];
+            }
+            for (int d : digits) {
+                queueLength += pi[s] * Math.max(d - 1, 0);
+            }
+        }
+        double throughput = lambda * (1 - blocking);
+        return new AnalyticSolution(queueLength / throughput, queueLength, throughput,
+            blocking, true, "per-server queues Markov chain (" + numStates + " states)");
+    }
+
+    /**
+     * Checks the simulator against the AnalyticModel: replicates the shop until the
+     * average wait and the fraction of Customers that left are precise enough, and
+     * checks that the solution lies within their confidence intervals. Since every
+     * replication starts empty and idle, the intervals are widened by a relative
+     * tolerance to absorb the warm-up bias of finite runs.
+     *
+     * @param config            the shop, which the AnalyticModel must apply to.
+     * @param relativeHalfWidth the target precision of the replications.
+     * @param maxReplications   the budget of replications.
+     * @param tolerance         the relative widening of the intervals, e.g. 0.02.
+     * @return the outcome of the checks.
+     */
+    public static ValidationReport validate(SimulationConfig config, double relativeHalfWidth,
+                                            int maxReplications, double tolerance) {
+        AnalyticSolution solution = solve(config);
+        ReplicationReport replications = new ReplicationController(config,
+            relativeHalfWidth, maxReplications, Metric.AVERAGE_WAIT, Metric.FRACTION_LEFT)
+                                             .run();
+        return new ValidationReport(solution, replications, tolerance);
+    }
+
+    private static void decode(int state, int base, int[] digits) {
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = state % base;
+            state /= base;
+        }
+    }
+
+    /**
+     * The server an arriving Customer goes to: the first idle one, else the first
+     * one whose queue isn't full.
+     *
+     * @return index of the server, -1 if the Customer leaves.
+     */
+    private static int route(int[] digits, int capacity) {
+        for (int i = 0; i < digits.length; i++) {
+            if (digits[i] == 0) {
+                return i;
+            }
+        }
+        for (int i = 0; i < digits.length; i++) {
+            if (digits[i] < capacity) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,78 @@
+package cs2030.simulator;
+
+/**
+ * An AnalyticSolution holds the steady-state performance of a shop as worked out
+ * by the AnalyticModel, without any simulation.
+ */
+public class AnalyticSolution {
+
+    private final double expectedWait;
+    private final double expectedQueueLength;
+    private final double throughput;
+    private final double blockingProbability;
+    private final boolean exact;
+    private final String method;
+
+    AnalyticSolution(double expectedWait, double expectedQueueLength, double throughput,
+                     double blockingProbability, boolean exact, String method) {
+        this.expectedWait = expectedWait;
+        this.expectedQueueLength = expectedQueueLength;
+        this.throughput = throughput;
+        this.blockingProbability = blockingProbability;
+        this.exact = exact;
+        this.method = method;
+    }
+
+    /**
+     * Expected time a served Customer waits before being served, i.e. the
+     * steady-state counterpart of the average waiting time statistic.
+     *
+     * @return the expected waiting time.
+     */
+    public double getExpectedWait() {
+        return this.expectedWait;
+    }
+
+    public double getExpectedQueueLength() {
+        return this.expectedQueueLength;
+    }
+
+    /**
+     * Rate at which Customers get served.
+     *
+     * @return the throughput, lambda * (1 - blocking probability).
+     */
+    public double getThroughput() {
+        return this.throughput;
+    }
+
+    /**
+     * Probability that an arriving Customer finds every queue full and leaves,
+     * i.e. the steady-state counterpart of the fraction of Customers that left.
+     *
+     * @return the blocking probability.
+     */
+    public double getBlockingProbability() {
+        return this.blockingProbability;
+    }
+
+    /**
+     * Whether the solution is exact for the shop, rather than an approximation.
+     *
+     * @return true if exact.
+     */
+    public boolean isExact() {
+        return this.exact;
+    }
+
+    @Override
+    public String toString() {
+        return "expected wait: " + String.format("%.6f", this.expectedWait) + "\n"
+                   + "expected queue length: "
+                   + String.format("%.6f", this.expectedQueueLength) + "\n"
+                   + "throughput: " + String.format("%.6f", this.throughput) + "\n"
+                   + "blocking probability: "
+                   + String.format("%.6f", this.blockingProbability) + "\n"
+                   + "method: " + this.method + (this.exact ? "" : " (approximation)");
+    }
+}
@@ -0,0 +1,206 @@
+package cs2030.simulator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An AsyncLogWriter takes the formatting and writing of the logs off the thread
+ * that runs the simulation. The simulation thread publishes compact event
+ * records into a preallocated ring buffer, with one producer and one consumer,
+ * and a writer thread formats them and writes them out in large batches.
+ * The ring is bounded: when it is full the simulation thread waits for the
+ * writer to catch up. The batches may instead be handed to a CompressedLog as
+ * its blocks, along with the times of their first and last events.
+ */
+class AsyncLogWriter {
+
+    static final int DEFAULT_CAPACITY = 1 << 16; // events
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    // the ring, as parallel arrays of the fields of an event:
+    private final int mask;
+    private final double[] times;
+    private final int[] customerIDs;
+    private final byte[] states;
+    private final boolean[] greedy;
+    private final int[] serverIDs; // Customer.NO_SERVER if the server isn't logged
+    private final boolean[] selfCheck;
+
+    private final AtomicLong published = new AtomicLong(); // written by the producer
+    private final AtomicLong consumed = new AtomicLong(); // written by the writer
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+
+    private final OutputStream out; // null if the logs are compressed
+    private final CompressedLog compressed; // null if they are not
+    private final int batchBytes;
+    private double batchFirstTime = 0;
+    private double batchLastTime = 0;
+    private final Thread writer;
+
+    /**
+     * Constructs a writer with the default capacity and starts its thread.
+     *
+     * @param out where the logs are written to.
+     */
+    AsyncLogWriter(OutputStream out) {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a writer and starts its thread.
+     *
+     * @param out      where the logs are written to.
+     * @param capacity how many events may be waiting to be written, a power of 2.
+     */
+    AsyncLogWriter(OutputStream out, int capacity) {
+        this(out, null, BATCH_BYTES, capacity);
+    }
+
+    /**
+     * Constructs a writer with the default capacity that compresses the logs,
+     * and starts its thread.
+     *
+     * @param compressed where the blocks of logs are written to, which is closed
+     *                   along with the writer.
+     */
+    AsyncLogWriter(CompressedLog compressed) {
+        this(null, compressed, CompressedLog.BLOCK_BYTES, DEFAULT_CAPACITY);
+    }
+
+    private AsyncLogWriter(OutputStream out, CompressedLog compressed, int batchBytes,
+                           int capacity) {
+        assert Integer.bitCount(capacity) == 1;
+        this.mask = capacity - 1;
+        this.times = new double[capacity];
+        this.customerIDs = new int[capacity];
+        this.states = new byte[capacity];
+        this.greedy = new boolean[capacity];
+        this.serverIDs = new int[capacity];
+        this.selfCheck = new boolean[capacity];
+        this.out = out;
+        this.compressed = compressed;
+        this.batchBytes = batchBytes;
+        this.writer = new Thread(this::drain, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Publishes an event, waiting while the ring is full.
+     * Only ever called from the simulation thread.
+     *
+     * @param time        when the event happens.
+     * @param customerID  the ID of the customer.
+     * @param state       the state code of the customer.
+     * @param isGreedy    whether the customer is greedy.
+     * @param serverID    the server to log, Customer.NO_SERVER for none.
+     * @param isSelfCheck whether the server is a self-checkout server.
+     */
+    void publish(double time, int customerID, byte state, boolean isGreedy,
+                 int serverID, boolean isSelfCheck) {
+        long sequence = this.published.get();
+        while (sequence - this.consumed.get() > this.mask) { // full, apply backpressure
+            checkFailure();
+            LockSupport.unpark(this.writer);
+            Thread.onSpinWait();
+        }
+        int slot = (int) sequence & this.mask;
+        this.times[slot] = time;
+        this.customerIDs[slot] = customerID;
+        this.states[slot] = state;
+        this.greedy[slot] = isGreedy;
+        this.serverIDs[slot] = serverID;
+        this.selfCheck[slot] = isSelfCheck;
+        this.published.lazySet(sequence + 1); // release the slot to the writer
+    }
+
+    /**
+     * Waits until every published event has been written and flushed.
+     *
+     * @throws UncheckedIOException if the logs could not be written.
+     */
+    void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (this.failure != null) {
+            throw new UncheckedIOException("cannot write the logs", this.failure);
+        }
+    }
+
+    /**
+     * Runs on the writer thread: formats whatever has been published, in order,
+     * and writes it out whenever a batch is big enough.
+     */
+    private void drain() {
+        StringBuilder batch = new StringBuilder(this.batchBytes + 256);
+        try {
+            while (true) {
+                boolean wasClosed = this.closed; // read before looking for events
+                long sequence = this.consumed.get();
+                long available = this.published.get();
+                if (sequence == available) {
+                    if (wasClosed) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                for (; sequence < available; sequence++) {
+                    format(batch, (int) sequence & this.mask);
+                    if (batch.length() >= this.batchBytes) {
+                        write(batch);
+                    }
+                }
+                this.consumed.lazySet(sequence); // hand the slots back
+            }
+            write(batch);
+            if (this.compressed != null) {
+                this.compressed.close();
+            } else {
+                this.out.flush();
+            }
+        } catch (IOException e) {
+            this.failure = e;
+            this.consumed.set(Long.MAX_VALUE / 2); // let a waiting producer through
+        }
+    }
+
+    private void format(StringBuilder batch, int slot) {
+        if (batch.length() == 0) {
+            this.batchFirstTime = this.times[slot];
+        }
+        this.batchLastTime = this.times[slot];
+        Customer.appendEvent(batch, this.times[slot], this.customerIDs[slot],
+            this.greedy[slot], this.states[slot]);
+        if (this.serverIDs[slot] != Customer.NO_SERVER) {
+            batch.append(this.selfCheck[slot] ? SelfServer.NAME_PREFIX : Server.NAME_PREFIX)
+                .append(this.serverIDs[slot]);
+        }
+        batch.append('\n');
+    }
+
+    private void write(StringBuilder batch) throws IOException {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.US_ASCII);
+        if (this.compressed == null) {
+            this.out.write(bytes);
+        } else if (bytes.length > 0) {
+            this.compressed.writeBlock(bytes, this.batchFirstTime, this.batchLastTime);
+        }
+        batch.setLength(0);
+    }
+}
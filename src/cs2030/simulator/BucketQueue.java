@@ -0,0 +1,137 @@
+package cs2030.simulator;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A BucketQueue is the queue of Customers waiting for a server, served by
+ * priority class and first come first served within a class. It keeps a ring
+ * buffer per class, the buckets, and a bit per class telling whether its bucket
+ * holds anyone, so that adding and taking the next Customer are both O(1)
+ * whatever the number of classes. With a single class it is a plain FIFO queue.
+ */
+class BucketQueue extends AbstractQueue<Customer> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Customer[][] buckets; // ring buffers, a power of 2 long
+    private final int[] heads;
+    private final int[] sizes;
+    private long occupied = 0; // bit c set if bucket c isn't empty
+    private int size = 0;
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param numClasses the number of priority classes, at most 64.
+     */
+    BucketQueue(int numClasses) {
+        assert (numClasses > 0 && numClasses <= CustomerClasses.MAX_CLASSES);
+        this.buckets = new Customer[numClasses][];
+        this.heads = new int[numClasses];
+        this.sizes = new int[numClasses];
+    }
+
+    @Override
+    public boolean offer(Customer c) {
+        int k = c.getCustomerClass();
+        Customer[] bucket = this.buckets[k];
+        if (bucket == null || this.sizes[k] == bucket.length) {
+            bucket = grow(k);
+        }
+        bucket[(this.heads[k] + this.sizes[k]) & (bucket.length - 1)] = c;
+        this.sizes[k]++;
+        this.occupied |= 1L << k;
+        this.size++;
+        return true;
+    }
+
+    @Override
+    public Customer poll() {
+        if (this.occupied == 0) {
+            return null;
+        }
+        int k = Long.numberOfTrailingZeros(this.occupied);
+        Customer[] bucket = this.buckets[k];
+        Customer c = bucket[this.heads[k]];
+        bucket[this.heads[k]] = null;
+        this.heads[k] = (this.heads[k] + 1) & (bucket.length - 1);
+        if (--this.sizes[k] == 0) {
+            this.occupied &= ~(1L << k);
+        }
+        this.size--;
+        return c;
+    }
+
+    @Override
+    public Customer peek() {
+        if (this.occupied == 0) {
+            return null;
+        }
+        int k = Long.numberOfTrailingZeros(this.occupied);
+        return this.buckets[k][this.heads[k]];
+    }
+
+    /**
+     * The highest priority class with anyone waiting.
+     *
+     * @return the index of the class, -1 if nobody waits.
+     */
+    int peekClass() {
+        return this.occupied == 0 ? -1 : Long.numberOfTrailingZeros(this.occupied);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Iterates over the waiting Customers in the order they would be served.
+     */
+    @Override
+    public Iterator<Customer> iterator() {
+        return new Iterator<>() {
+            private int bucket = 0;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (this.bucket < BucketQueue.this.buckets.length
+                           && this.index >= BucketQueue.this.sizes[this.bucket]) {
+                    this.bucket++;
+                    this.index = 0;
+                }
+                return this.bucket < BucketQueue.this.buckets.length;
+            }
+
+            @Override
+            public Customer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Customer[] b = BucketQueue.this.buckets[this.bucket];
+                return b[(BucketQueue.this.heads[this.bucket] + this.index++) & (b.length - 1)];
+            }
+        };
+    }
+
+    /**
+     * Doubles the ring buffer of a class, unrolling it to start at 0.
+     */
+    private Customer[] grow(int k) {
+        Customer[] old = this.buckets[k];
+        if (old == null) {
+            this.buckets[k] = new Customer[INITIAL_CAPACITY];
+            return this.buckets[k];
+        }
+        Customer[] larger = new Customer[old.length * 2];
+        for (int i = 0; i < this.sizes[k]; i++) {
+            larger[i] = old[(this.heads[k] + i) & (old.length - 1)];
+        }
+        this.heads[k] = 0;
+        this.buckets[k] = larger;
+        return larger;
+    }
+}
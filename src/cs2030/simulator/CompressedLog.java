@@ -0,0 +1,245 @@
+package cs2030.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A CompressedLog keeps the logs of a long run compressed on disk, block by
+ * block, each block an independent gzip member, so that the whole file is still
+ * an ordinary gzip file. Blocks are compressed in parallel on a pool of threads
+ * and written in order. A sidecar index, the file name plus INDEX_SUFFIX, holds
+ * the int INDEX_MAGIC, the int number of blocks and per block the long offset,
+ * the int compressed length and the double times of its first and last events,
+ * so that the events of any window of time can be read back by decompressing
+ * only the blocks that overlap it.
+ * Read a window back with
+ * "java -cp classes cs2030.simulator.CompressedLog file from to".
+ */
+public class CompressedLog {
+
+    static final int INDEX_MAGIC = 0x434c4931; // "CLI1"
+    static final String INDEX_SUFFIX = ".idx";
+    static final int BLOCK_BYTES = 1 << 20; // of the logs, before compression
+    // the logs are repetitive enough that the fastest level keeps most of the gain:
+    static final int LEVEL = Deflater.BEST_SPEED;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0,
+        0, 0, 0, 0, 0, (byte) 0xff};
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(
+        () -> new Deflater(LEVEL, true));
+
+    private final Path file;
+    private final OutputStream out;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<double[]> inFlightTimes = new ArrayDeque<>();
+    private final DataOutputStream index; // of the blocks written, buffered in memory
+    private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    private long offset = 0;
+    private int numBlocks = 0;
+
+    /**
+     * Creates the file, overwriting any, and starts the threads compressing.
+     *
+     * @param file    where the compressed logs go.
+     * @param threads how many blocks to compress at the same time.
+     * @throws IOException if the file can't be created.
+     */
+    CompressedLog(Path file, int threads) throws IOException {
+        this.file = file;
+        this.out = Files.newOutputStream(file);
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "log-compressor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = 2 * threads;
+        this.index = new DataOutputStream(this.indexBytes);
+    }
+
+    /**
+     * Hands a block of formatted logs over to be compressed, writing out the
+     * blocks compressed by now, in order, and waiting for the oldest if too many
+     * are in flight.
+     *
+     * @param block     the logs, whole lines, no longer used by the caller.
+     * @param firstTime the time of the first event in the block.
+     * @param lastTime  the time of the last event in the block.
+     * @throws IOException if a block can't be compressed or written.
+     */
+    void writeBlock(byte[] block, double firstTime, double lastTime) throws IOException {
+        this.inFlight.addLast(this.pool.submit(() -> compress(block)));
+        this.inFlightTimes.addLast(new double[] {firstTime, lastTime});
+        while (!this.inFlight.isEmpty()
+                   && (this.inFlight.size() > this.maxInFlight || this.inFlight.peek().isDone())) {
+            writeOldest();
+        }
+    }
+
+    /**
+     * Writes out every block still in flight, then the index, and closes the file.
+     *
+     * @throws IOException if a block or the index can't be written.
+     */
+    void close() throws IOException {
+        try {
+            while (!this.inFlight.isEmpty()) {
+                writeOldest();
+            }
+            this.out.close();
+            try (DataOutputStream indexFile = new DataOutputStream(Files.newOutputStream(
+                indexOf(this.file)))) {
+                indexFile.writeInt(INDEX_MAGIC);
+                indexFile.writeInt(this.numBlocks);
+                this.indexBytes.writeTo(indexFile);
+            }
+        } finally {
+            this.pool.shutdownNow();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        byte[] member;
+        try {
+            member = this.inFlight.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted compressing the logs", e);
+        } catch (ExecutionException e) {
+            throw new IOException("cannot compress the logs", e.getCause());
+        }
+        double[] times = this.inFlightTimes.poll();
+        this.out.write(member);
+        this.index.writeLong(this.offset);
+        this.index.writeInt(member.length);
+        this.index.writeDouble(times[0]);
+        this.index.writeDouble(times[1]);
+        this.offset += member.length;
+        this.numBlocks++;
+    }
+
+    /**
+     * Compresses a block into a gzip member, with the Deflater of the thread.
+     */
+    private static byte[] compress(byte[] block) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(block);
+        deflater.finish();
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        byte[] member = new byte[GZIP_HEADER.length + block.length / 2 + 64];
+        System.arraycopy(GZIP_HEADER, 0, member, 0, GZIP_HEADER.length);
+        int length = GZIP_HEADER.length;
+        while (!deflater.finished()) {
+            if (length == member.length) {
+                member = Arrays.copyOf(member, member.length * 2);
+            }
+            length += deflater.deflate(member, length, member.length - length);
+        }
+        byte[] result = Arrays.copyOf(member, length + 8);
+        writeIntLittleEndian(result, length, (int) crc.getValue());
+        writeIntLittleEndian(result, length + 4, block.length);
+        return result;
+    }
+
+    private static void writeIntLittleEndian(byte[] bytes, int at, int value) {
+        for (int i = 0; i < 4; i++) {
+            bytes[at + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static Path indexOf(Path file) {
+        return Paths.get(file + INDEX_SUFFIX);
+    }
+
+    /**
+     * Copies the events between two times out of a compressed log, decompressing
+     * only the blocks that overlap them.
+     *
+     * @param file the compressed log, next to its index.
+     * @param from the earliest time of the events to copy, as logged.
+     * @param to   the latest time of the events to copy, as logged.
+     * @param out  where the events go, one line each, which is flushed.
+     * @throws IOException if the log or its index can't be read.
+     */
+    public static void copyWindow(Path file, double from, double to, Writer out)
+        throws IOException {
+        double slack = 0.0005; // the times logged are rounded to 3 decimals
+        try (DataInputStream index = new DataInputStream(
+                 Files.newInputStream(indexOf(file)));
+             RandomAccessFile log = new RandomAccessFile(file.toFile(), "r")) {
+            if (index.readInt() != INDEX_MAGIC) {
+                throw new IOException("not an index of a compressed log: " + indexOf(file));
+            }
+            int numBlocks = index.readInt();
+            for (int b = 0; b < numBlocks; b++) {
+                long offset = index.readLong();
+                int length = index.readInt();
+                double firstTime = index.readDouble();
+                double lastTime = index.readDouble();
+                if (firstTime > to + slack) {
+                    break; // the blocks are in order of time
+                }
+                if (lastTime < from - slack) {
+                    continue;
+                }
+                byte[] member = new byte[length];
+                log.seek(offset);
+                log.readFully(member);
+                copyLines(member, from, to, out);
+            }
+        }
+        out.flush();
+    }
+
+    private static void copyLines(byte[] member, double from, double to, Writer out)
+        throws IOException {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new ByteArrayInputStream(member)), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                double time = Double.parseDouble(line.substring(0, line.indexOf(' ')));
+                if (time >= from && time <= to) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the events of a window of time out of a compressed log.
+     *
+     * @param args the compressed log, the earliest and the latest time.
+     * @throws IOException if the log or its index can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        copyWindow(Paths.get(args[0]), Double.parseDouble(args[1]),
+            Double.parseDouble(args[2]),
+            new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)));
+    }
+}
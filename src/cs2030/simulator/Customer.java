@@ -3,116 +3,189 @@ package cs2030.simulator;
 /**
  * A Customer enters the shop, and if possible, gets served immediately else waits if
  * there isn't anyone else waiting else Customer leaves.
+ * A Customer is a compact record: its state is a byte code and a state change
+ * updates the record in place, so that the Manager can recycle the records of
+ * Customers that are done or have left through a CustomerPool.
  */
 public class Customer implements Comparable<Customer> {
 
-    /*                             stats:                                   */
-    static int CustomersEnteredCounter = 0; // class-level counter, used for setting IDs
-    static int CustomersServed = 0;
-    static int CustomersLeft = 0;
-    static double TotalWaitingTime = 0;
-    static int TotalWaitCounter = 0;
     protected static final int NO_SERVER = 0;
 
+    /*                          state codes:                                */
+    static final byte ARRIVES = 0;
+    static final byte WAITS = 1;
+    static final byte SERVED = 2;
+    static final byte DONE = 3;
+    static final byte LEAVES = 4;
+    static final byte FIRST_REGISTERED_KIND = 5; // of events registered with a Manager
+    private static final String[] STATUS_NAMES = {"arrives", "waits", "served", "done",
+        "leaves"};
+
 
     // instance attributes:
-    private final int myID;
-    private final double presentTime;
-    private final double nextTime;
-    private final String customerStatus; // lowercase string
-    protected int serverID; // NO_SERVER if unassigned
+    private int myID;
+    private double presentTime;
+    private double nextTime;
+    private byte state;
+    protected int serverID; // NO_SERVER if unassigned, the payload of an event
     protected boolean firstWaits = true;
-    private final double entryTime;
-    protected final boolean isGreedy;
+    protected boolean hasWaited = false; // in the queue of its server
+    private double entryTime;
+    protected boolean isGreedy;
+    private int customerClass; // 0, the highest priority, unless classes are set
+    private final RunStatistics stats; // statistics of the run this customer is in
 
     /**
      * Constructs a Customer when the Customer enters.
      *
-     * @param myID        each customer has a unique customer ID
+     * @param stats       the statistics of the run the customer enters.
      * @param presentTime refers to the timing when the status "arrives" is assigned
      *                    to the customer
+     * @param isGreedy    whether the customer queues greedily.
+     * @param customerClass the priority class of the customer.
      */
-    private Customer(int myID, double presentTime) {
-        this.myID = myID;
-        this.presentTime = presentTime;
-        this.nextTime = presentTime; // initially set as the same upon arival
-        this.customerStatus = "arrives";
-        this.serverID = NO_SERVER;
-        this.entryTime = presentTime;
-        this.isGreedy = false;
+    private Customer(RunStatistics stats, double presentTime, boolean isGreedy,
+                     int customerClass) {
+        this.stats = stats;
+        reenter(presentTime, isGreedy, customerClass);
     }
 
-    /**
-     * Constructs a greedily entering customer.
-     * @param myID
-     * @param presentTime
-     * @param isGreedy
-     */
-    private Customer(int myID, double presentTime, boolean isGreedy) {
-        this.myID = myID;
-        this.presentTime = presentTime;
-        this.nextTime = presentTime; // initially set as the same upon arival
-        this.customerStatus = "arrives";
-        this.serverID = NO_SERVER;
-        this.entryTime = presentTime;
-        this.isGreedy = isGreedy; // to be set true
-    }
 
     /**
-     * Constructs a customer whenever there's a state change.
-     *  @param myID               each customer has a unique customer ID.
-     * @param updatedPresentTime when the current state change has happened.
-     * @param updatedNextTime    when the next state change will happen.
-     * @param newStatus          the newly assigned status of the customer.
-     * @param serverID           the Server assigned to this customer.
-     * @param isGreedy
+     * Generates a customer when the someone enters.
+     * Customer's status is "arrives".
+     * Side effect:
+     * 1. the customersEntered counter of the run is incremented.
+     *
+     * @param stats       the statistics of the run the customer enters.
+     * @param arrivalTime when the customer entered the establishment
+     * @return Customer the newly arrived customer
      */
-    private Customer(int myID, double updatedPresentTime, double updatedNextTime,
-                     String newStatus, int serverID, double entryTime, boolean isGreedy) {
-        this.myID = myID;
-        this.presentTime = updatedPresentTime;
-        this.nextTime = updatedNextTime;
-        this.customerStatus = newStatus;
-        this.serverID = serverID;
-        this.entryTime = entryTime;
-        this.isGreedy = isGreedy;
+    protected static Customer enter(RunStatistics stats, double arrivalTime) {
+        return new Customer(stats, arrivalTime, false, 0);
     }
 
+    protected static Customer enterGreedily(RunStatistics stats, double arrivalTime) {
+        return new Customer(stats, arrivalTime, true, 0);
+    }
 
     /**
-     * Generates a customer when the someone enters.
-     * Customer's status is "arrives".
+     * Generates a customer of a priority class when someone enters.
      * Side effect:
-     * 1. the CustomersEnteredCounter is incremented.
+     * 1. the customersEntered counter of the run is incremented.
      *
-     * @param arrivalTime when the customer entered the establishment
+     * @param stats         the statistics of the run the customer enters.
+     * @param arrivalTime   when the customer entered the establishment
+     * @param isGreedy      whether the customer queues greedily.
+     * @param customerClass the priority class of the customer.
      * @return Customer the newly arrived customer
      */
-    protected static Customer enter(double arrivalTime) {
-        return new Customer(++CustomersEnteredCounter, arrivalTime);
+    static Customer enter(RunStatistics stats, double arrivalTime, boolean isGreedy,
+                          int customerClass) {
+        return new Customer(stats, arrivalTime, isGreedy, customerClass);
     }
 
-    protected static Customer enterGreedily(double arrivalTime) {
-        return new Customer(++CustomersEnteredCounter, arrivalTime, true);
+    /**
+     * Constructs a bare record, for an event that isn't a Customer's.
+     */
+    private Customer(RunStatistics stats) {
+        this.stats = stats;
     }
 
     /**
-     * Gives the Customer Statistics when called.
+     * Generates the record of an event of a kind registered with a Manager, which
+     * doesn't count as a Customer entering and is never logged.
      *
-     * @return String representation of the class level statistics being tallied
+     * @param stats the statistics of the run the event happens in.
+     * @param kind  the code of the kind of event, from FIRST_REGISTERED_KIND on.
+     * @param time  when the event happens.
+     * @param id    orders the event among those at the same time, below every
+     *              Customer ID.
+     * @param payload what the event is scheduled with, e.g. a server ID.
+     * @return the record of the event.
      */
-    protected static String customerStats() {
-        double averageWaitingTime =
-            (CustomersServed == 0 || TotalWaitingTime == 0)
-                ? 0 : Customer.TotalWaitingTime / Customer.CustomersServed;
-        return "[" + prettyPrint(averageWaitingTime) + " "
-                   + CustomersServed + " " + (CustomersEnteredCounter - CustomersServed) + "]";
+    static Customer event(RunStatistics stats, byte kind, double time, int id, int payload) {
+        return new Customer(stats).reuseForEvent(kind, time, id, payload);
     }
 
+    /**
+     * Reuses the record of a Customer that is done or has left, or of an event
+     * that is over, for an event of a registered kind.
+     *
+     * @param kind    the code of the kind of event, from FIRST_REGISTERED_KIND on.
+     * @param time    when the event happens.
+     * @param id      orders the event among those at the same time.
+     * @param payload what the event is scheduled with.
+     * @return this record, as the event.
+     */
+    Customer reuseForEvent(byte kind, double time, int id, int payload) {
+        this.myID = id;
+        this.serverID = payload;
+        this.firstWaits = false;
+        return reschedule(kind, time);
+    }
 
+    /**
+     * Moves the record of a registered event to another time.
+     *
+     * @param kind the code of the kind of event.
+     * @param time when the event happens next.
+     * @return this record, rescheduled.
+     */
+    Customer reschedule(byte kind, double time) {
+        this.presentTime = time;
+        this.nextTime = time;
+        this.state = kind;
+        return this;
+    }
 
+    /**
+     * Reuses the record of a Customer that is done or has left for a newly
+     * entering Customer, with a new ID.
+     * Side effect:
+     * 1. the customersEntered counter of the run is incremented.
+     *
+     * @param arrivalTime when the customer entered the establishment
+     * @param greedy      whether the customer queues greedily.
+     * @param customerClass the priority class of the customer.
+     * @return this record, as the newly arrived customer.
+     */
+    Customer reenter(double arrivalTime, boolean greedy, int customerClass) {
+        this.myID = this.stats.nextCustomerID(customerClass);
+        this.presentTime = arrivalTime;
+        this.nextTime = arrivalTime; // initially set as the same upon arival
+        this.state = ARRIVES;
+        this.serverID = NO_SERVER;
+        this.firstWaits = true;
+        this.hasWaited = false;
+        this.entryTime = arrivalTime;
+        this.isGreedy = greedy;
+        this.customerClass = customerClass;
+        return this;
+    }
+
+    /**
+     * Changes the state of this record in place. Like every freshly changed
+     * Customer, it is worth logging unless it is waiting again.
+     *
+     * @param updatedPresentTime when the current state change has happened.
+     * @param updatedNextTime    when the next state change will happen.
+     * @param newState           the newly assigned state code of the customer.
+     * @param newServerID        the Server assigned to this customer.
+     * @return this record, in its new state.
+     */
+    private Customer change(double updatedPresentTime, double updatedNextTime,
+                            byte newState, int newServerID) {
+        this.presentTime = updatedPresentTime;
+        this.nextTime = updatedNextTime;
+        this.state = newState;
+        this.serverID = newServerID;
+        this.firstWaits = true;
+        return this;
+    }
 
     /*======================  STATE CHANGES: ==================================*/
+    /*        each state change updates this record and returns it            */
 
     /*                        from arrival state                               */
 
@@ -120,14 +193,16 @@ public class Customer implements Comparable<Customer> {
      * Customer served upon arrival if there's an idle Server.
      * State change:  ARRIVES to SERVED
      * Since it's a change from arrival state, a server needs to be assigned.
+     * Side effect:
+     * 1. a waiting time of 0 is recorded.
      *
      * @param serverID the server that's assigned to the new Customer.
      * @return Customer Customer that gets served.
      */
     protected Customer fromArrivesToServed(int serverID) {
         // ARRIVES to SERVED (i.e served immediately)
-        return new Customer(this.myID, this.presentTime, this.presentTime,
-            "served", serverID, this.entryTime, isGreedy);
+        this.stats.recordWait(this.customerClass, 0);
+        return change(this.presentTime, this.presentTime, SERVED, serverID);
     }
 
     /**
@@ -137,16 +212,16 @@ public class Customer implements Comparable<Customer> {
      * Since it's a change from arrival state, a server needs to be assigned.
      * Side effects:
      * 1. since waiting duration will be known (nextTime - presentTime)
-     * then we can add this to the TotalWaitingTime statistic.
-     * 2. we increment the TotalWaitCounter.
+     * then we can add this to the totalWaitingTime statistic.
+     * 2. we increment the totalWaitCounter.
      *
      * @param nextAvailableTime the next time for a queueableServer.
      * @return Customer Customer that waits.
      */
     protected Customer fromArrivesToWaits(double nextAvailableTime, int serverID) {
-        Customer.TotalWaitCounter++;
-        return new Customer(this.myID, this.presentTime, nextAvailableTime,
-            "waits", serverID, this.entryTime, isGreedy);
+        this.stats.totalWaitCounter++;
+        this.hasWaited = true;
+        return change(this.presentTime, nextAvailableTime, WAITS, serverID);
     }
 
     /**
@@ -155,11 +230,10 @@ public class Customer implements Comparable<Customer> {
      * @return Customer with modified present and next times
      */
     public Customer fromWaitsToWaits(double nextAvailableTime) {
-        assert (this.customerStatus.equals("waits"));
-        Customer res = new Customer(this.myID, nextAvailableTime,
-            nextAvailableTime, "waits", this.serverID, this.entryTime, isGreedy);
-        res.firstWaits = false;
-        return res;
+        assert (this.state == WAITS);
+        change(nextAvailableTime, nextAvailableTime, WAITS, this.serverID);
+        this.firstWaits = false;
+        return this;
     }
 
     /**
@@ -167,18 +241,17 @@ public class Customer implements Comparable<Customer> {
      * State change: WAITS to SERVED.
      * The presentTime shall be when the Serving happens i.e. when done waiting.
      * The nextTime shall be sort of a stub, since it's not gonna be used
+     * Side effect:
+     * 1. the waiting time is added to the totalWaitingTime statistic and recorded.
      *
      * @return Customer Customer that is done waiting and will be served next.
      */
     protected Customer fromWaitsToServed(double nextAvailableTime) {
-        assert (this.customerStatus.equals("waits"));
-        Customer.TotalWaitingTime += (nextAvailableTime - this.entryTime);
+        assert (this.state == WAITS);
+        this.stats.totalWaitingTime += (nextAvailableTime - this.entryTime);
+        this.stats.recordWait(this.customerClass, nextAvailableTime - this.entryTime);
         // will def be served if there's no one else waiting:
-        return new Customer(this.myID,
-            nextAvailableTime,
-            nextAvailableTime,
-            "served",
-            this.serverID, this.entryTime, isGreedy);
+        return change(nextAvailableTime, nextAvailableTime, SERVED, this.serverID);
     }
 
     /*                        to terminal  state                               */
@@ -189,60 +262,76 @@ public class Customer implements Comparable<Customer> {
      * A done customer's present time is when he's done.
      * A done customer, being a terminal state will have the same next time as present.
      * Side effect:
-     * 1. The CustomersServed counter is incremented.
+     * 1. The customersServed counter is incremented.
      *
      * @param completionTime when the customer will be done, as informed by the Manager.
      * @return Customer Customer that is done.
      */
     protected Customer fromServedToDone(double completionTime) {
-        ++CustomersServed;
-        return new Customer(this.myID, completionTime, completionTime, "done", this.serverID, this.entryTime, isGreedy);
+        ++this.stats.customersServed;
+        return change(completionTime, completionTime, DONE, this.serverID);
     }
 
     /**
      * Customer decides to leave if no Server is idle and not possible to queue.
      * State change: ARRIVES to LEAVES
      * Side Effect:
-     * 1. The CustomersLeft counter is incremented.
+     * 1. The customersLeft counter is incremented.
      *
      * @return Customer Customer that leaves.
      */
     protected Customer fromArrivesToLeaves() {
-        Customer.CustomersLeft++;
-        return new Customer(this.myID, this.presentTime, this.presentTime,
-            "leaves", NO_SERVER, this.entryTime, isGreedy);
+        this.stats.customersLeft++;
+        this.stats.recordLeaving(this.customerClass);
+        return change(this.presentTime, this.presentTime, LEAVES, NO_SERVER);
     }
 
     //==========================================================================
 
 
     protected Customer reassignServer(int newServerID) {
-        return new Customer(this.myID,this.getPresentTime(),this.nextTime,
-            this.customerStatus,newServerID,this.entryTime, isGreedy);
+        return change(this.presentTime, this.nextTime, this.state, newServerID);
     }
 
     @Override
     public String toString() {
-        String status = this.customerStatus;
-        String res = prettyPrint(this.presentTime)
-                         + " " + this.myID
-                         +(this.isGreedy ? "(greedy)" : "")
-                         + " " + status;
-        switch (status) {
-            case "served":
-                res += " by ";
+        return appendEvent(new StringBuilder(), this.presentTime, this.myID, this.isGreedy,
+            this.state).toString();
+    }
+
+    /**
+     * Appends the log of a Customer event, up to but excluding its Server.
+     * Kept apart from any Customer record so that logs can be formatted from
+     * compact copies of the events, e.g. by an AsyncLogWriter.
+     *
+     * @param res         where the log goes.
+     * @param presentTime when the event happens.
+     * @param id          the ID of the customer.
+     * @param isGreedy    whether the customer is greedy.
+     * @param state       the state code of the customer.
+     * @return res, for chaining.
+     */
+    static StringBuilder appendEvent(StringBuilder res, double presentTime, int id,
+                                     boolean isGreedy, byte state) {
+        res.append(prettyPrint(presentTime)).append(' ').append(id);
+        if (isGreedy) {
+            res.append("(greedy)");
+        }
+        res.append(' ').append(STATUS_NAMES[state]);
+        switch (state) {
+            case SERVED:
+                res.append(" by ");
                 break;
-            case "done":
-                res += " serving by ";
+            case DONE:
+                res.append(" serving by ");
                 break;
-            case "waits":
-                res += " to be served by ";
+            case WAITS:
+                res.append(" to be served by ");
                 break;
             default:
-                res += "";
+                break;
         }
         return res;
-
     }
 
     /**
@@ -296,8 +385,20 @@ public class Customer implements Comparable<Customer> {
         return this.nextTime;
     }
 
+    double getEntryTime() {
+        return this.entryTime;
+    }
+
+    int getCustomerClass() {
+        return this.customerClass;
+    }
+
     public String getCustomerStatus() {
-        return this.customerStatus;
+        return STATUS_NAMES[this.state];
+    }
+
+    byte getState() {
+        return this.state;
     }
 
     /**
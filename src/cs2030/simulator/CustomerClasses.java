@@ -0,0 +1,120 @@
+package cs2030.simulator;
+
+/**
+ * CustomerClasses split the Customers into priority classes, e.g. loyalty
+ * members ahead of everyone else, each making up a share of the arrivals.
+ * Waiting Customers are served by class, highest priority first, and first come
+ * first served within a class; nobody being served is ever interrupted for a
+ * Customer of a higher class.
+ * The classes are immutable, hence can be shared between concurrent runs.
+ */
+public class CustomerClasses {
+
+    static final int MAX_CLASSES = 64; // one bit per class in a BucketQueue
+
+    private final String[] names; // from the highest priority down
+    private final double[] cumulativeShares; // up to and including each class
+
+    /**
+     * Constructs the classes.
+     *
+     * @param names  the names of the classes, from the highest priority down.
+     * @param shares how much of the arrivals each class makes up, relative to the
+     *               others.
+     */
+    public CustomerClasses(String[] names, double[] shares) {
+        assert (names.length == shares.length && names.length > 0
+                    && names.length <= MAX_CLASSES);
+        this.names = names.clone();
+        this.cumulativeShares = new double[shares.length];
+        double total = 0;
+        for (double share : shares) {
+            assert share >= 0;
+            total += share;
+        }
+        assert total > 0;
+        double sum = 0;
+        for (int i = 0; i < shares.length; i++) {
+            sum += shares[i];
+            this.cumulativeShares[i] = sum / total;
+        }
+    }
+
+    /**
+     * Reads the classes from "name:share,name:share,...", from the highest
+     * priority down, e.g. "loyal:1,express:2,regular:7", whose shares are finite,
+     * non-negative and not all 0.
+     *
+     * @param spec the classes with their shares of the arrivals.
+     * @return the classes.
+     * @throws IllegalArgumentException if the spec can't be read.
+     */
+    public static CustomerClasses parse(String spec) {
+        String[] fields = spec.split(",");
+        if (fields.length > MAX_CLASSES) {
+            throw new IllegalArgumentException("at most " + MAX_CLASSES + " classes: " + spec);
+        }
+        String[] names = new String[fields.length];
+        double[] shares = new double[fields.length];
+        double total = 0;
+        for (int i = 0; i < fields.length; i++) {
+            int colon = fields[i].indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("class needs a name and share: " + spec);
+            }
+            names[i] = fields[i].substring(0, colon);
+            shares[i] = Double.parseDouble(fields[i].substring(colon + 1));
+            if (!(shares[i] >= 0) || Double.isInfinite(shares[i])) {
+                throw new IllegalArgumentException("share not finite and non-negative: " + spec);
+            }
+            total += shares[i];
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("shares are all 0: " + spec);
+        }
+        return new CustomerClasses(names, shares);
+    }
+
+    /**
+     * The class of an arriving Customer.
+     *
+     * @param u a uniform random number in [0, 1), e.g. from genCustomerType.
+     * @return the index of the class, 0 being the highest priority.
+     */
+    int classOf(double u) {
+        for (int i = 0; i < this.cumulativeShares.length - 1; i++) {
+            if (u < this.cumulativeShares[i]) {
+                return i;
+            }
+        }
+        return this.cumulativeShares.length - 1;
+    }
+
+    public int getNumClasses() {
+        return this.names.length;
+    }
+
+    public String getName(int customerClass) {
+        return this.names[customerClass];
+    }
+
+    /**
+     * The share of the arrivals a class makes up.
+     *
+     * @param customerClass the index of the class.
+     * @return the fraction of Customers in the class.
+     */
+    public double getShare(int customerClass) {
+        return this.cumulativeShares[customerClass]
+                   - (customerClass == 0 ? 0 : this.cumulativeShares[customerClass - 1]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder();
+        for (int i = 0; i < this.names.length; i++) {
+            res.append(i == 0 ? "" : ",").append(this.names[i]).append(':').append(getShare(i));
+        }
+        return res.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package cs2030.simulator;
+
+/**
+ * A CustomerPool recycles the records of Customers that are done or have left,
+ * so that a Manager only ever allocates as many Customers as are in the shop at
+ * the same time. A pool belongs to a single Manager and is not thread-safe.
+ */
+class CustomerPool {
+
+    private final RunStatistics stats;
+    private Customer[] free = new Customer[64];
+    private int size = 0;
+
+    /**
+     * Constructs an empty pool for the Customers of a run.
+     *
+     * @param stats the statistics of the run the Customers enter.
+     */
+    CustomerPool(RunStatistics stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Generates a customer when someone enters, reusing a free record if any.
+     *
+     * @param arrivalTime when the customer entered the establishment.
+     * @param isGreedy    whether the customer queues greedily.
+     * @param customerClass the priority class of the customer.
+     * @return the newly arrived customer.
+     */
+    Customer enter(double arrivalTime, boolean isGreedy, int customerClass) {
+        if (this.size == 0) {
+            return Customer.enter(this.stats, arrivalTime, isGreedy, customerClass);
+        }
+        Customer c = this.free[--this.size];
+        this.free[this.size] = null;
+        return c.reenter(arrivalTime, isGreedy, customerClass);
+    }
+
+    /**
+     * Generates the record of an event of a registered kind, reusing a free
+     * record if any.
+     *
+     * @param kind    the code of the kind of event.
+     * @param time    when the event happens.
+     * @param id      orders the event among those at the same time.
+     * @param payload what the event is scheduled with.
+     * @return the record of the event.
+     */
+    Customer event(byte kind, double time, int id, int payload) {
+        if (this.size == 0) {
+            return Customer.event(this.stats, kind, time, id, payload);
+        }
+        Customer c = this.free[--this.size];
+        this.free[this.size] = null;
+        return c.reuseForEvent(kind, time, id, payload);
+    }
+
+    /**
+     * Takes back the record of a Customer that is done or has left. Nothing else
+     * may hold on to the record any more.
+     *
+     * @param c the Customer in a terminal state.
+     */
+    void release(Customer c) {
+        if (this.size == this.free.length) {
+            Customer[] larger = new Customer[this.size * 2];
+            System.arraycopy(this.free, 0, larger, 0, this.size);
+            this.free = larger;
+        }
+        this.free[this.size++] = c;
+    }
+}
@@ -0,0 +1,176 @@
+package cs2030.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A DigitalTwin follows a shop live: the Customers arriving in the real shop are
+ * admitted into a Manager as they come, and for each the twin predicts at once
+ * how long it will wait, from the state of the queues the Manager has simulated
+ * up to that moment. Service times observed in the shop may be fed in too, and
+ * are then used for the next services instead of drawn ones.
+ * The twin reads one record a line:
+ * "arrive time [greedy]" admits a Customer, and is answered with
+ * "ID prediction queueSizes...", where the prediction is the expected wait, 0
+ * if served at once, or "leaves", and the queue sizes are those of the human
+ * servers followed by the shared one of the self-checkout servers, if any;
+ * "service time duration" queues an observed service time;
+ * "clock time" only advances the twin, and is answered with "- - queueSizes...".
+ * Fields are separated by any whitespace. Times must be finite and may not go
+ * back, and durations must be finite and non-negative. A bad record is answered
+ * with "error ..." and skipped.
+ * Only the events up to the time of the newest record are simulated, nothing is
+ * kept per Customer once it's gone, and answers are flushed whenever no more
+ * input is waiting, so each record takes microseconds however long the twin runs.
+ */
+public class DigitalTwin {
+
+    private final Manager manager;
+    private final int numHumanServers;
+    private final int numSelfServers;
+    private final double meanServiceTime;
+    private final double meanRestAfterService; // pRest / rho
+    private double now = 0;
+    private final StringBuilder answer = new StringBuilder();
+
+    /**
+     * Constructs a twin of the given shop, whose own number of arrivals is
+     * ignored: only the Customers admitted arrive.
+     *
+     * @param config the shop, with the distributions to draw service times from.
+     */
+    public DigitalTwin(SimulationConfig config) {
+        this.manager = new Manager(config.withNumArrivalEvents(0), false);
+        this.numHumanServers = config.getNumServers();
+        this.numSelfServers = config.getNumSelfServers();
+        this.meanServiceTime = config.getServiceTimes().getMean();
+        this.meanRestAfterService = config.getPRest() / config.getRho();
+    }
+
+    /**
+     * Reads records until the input ends, answering each as it comes.
+     *
+     * @param in  the records.
+     * @param out the answers, flushed whenever no more input is waiting.
+     * @throws IOException if the records can't be read or the answers written.
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!line.isBlank()) {
+                String answered = handle(line.trim());
+                if (answered != null) {
+                    out.write(answered);
+                    out.write('\n');
+                }
+            }
+            if (!in.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Handles a record.
+     *
+     * @param record the record, e.g. "arrive 12.5 greedy".
+     * @return the answer, null if the record needs none.
+     */
+    public String handle(String record) {
+        String[] fields = record.trim().split("\\s+");
+        double time;
+        try {
+            time = Double.parseDouble(fields[1]);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return "error no time: " + record;
+        }
+        if (!Double.isFinite(time)) {
+            return "error time not finite: " + record;
+        }
+        if (time < this.now) {
+            return "error time goes back: " + record;
+        }
+        switch (fields[0]) {
+            case "arrive":
+                this.now = time;
+                Customer c = this.manager.admit(time,
+                    fields.length > 2 && fields[2].equals("greedy"), 0);
+                this.answer.setLength(0);
+                this.answer.append(c.getID()).append(' ');
+                if (c.getState() == Customer.LEAVES) {
+                    this.answer.append("leaves");
+                } else {
+                    this.answer.append(Customer.prettyPrint(predictWait(c)));
+                }
+                return appendQueues().toString();
+            case "service":
+                double duration;
+                try {
+                    duration = Double.parseDouble(fields[2]);
+                } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                    return "error no duration: " + record;
+                }
+                if (!Double.isFinite(duration) || duration < 0) {
+                    return "error duration not finite and non-negative: " + record;
+                }
+                this.now = time;
+                this.manager.advanceTo(time);
+                this.manager.replayServiceTime(duration);
+                return null;
+            case "clock":
+                this.now = time;
+                this.manager.advanceTo(time);
+                this.answer.setLength(0);
+                this.answer.append("- -");
+                return appendQueues().toString();
+            default:
+                return "error unknown record: " + record;
+        }
+    }
+
+    /**
+     * Ends the day: simulates the Customers still in the shop until they're done.
+     *
+     * @return the statistics of every Customer admitted.
+     */
+    public RunStatistics finish() {
+        this.manager.operate();
+        return this.manager.getStatistics();
+    }
+
+    /**
+     * The expected wait of a Customer who has just been admitted: the time until
+     * its server is free, plus a service, and maybe a rest, for everyone ahead of
+     * it in the queue; the self-checkout servers share the work of a queue.
+     */
+    private double predictWait(Customer c) {
+        if (c.getState() != Customer.WAITS) {
+            return 0;
+        }
+        Server[] servers = this.manager.getServers();
+        Server s = servers[c.serverID - 1];
+        int ahead = s.getQueueSize() - 1;
+        if (!(s instanceof SelfServer)) {
+            double untilFree = Math.max(0, s.nextAvailableTime - this.now);
+            return untilFree + ahead * (this.meanServiceTime + this.meanRestAfterService);
+        }
+        double untilFree = Double.POSITIVE_INFINITY;
+        for (int i = this.numHumanServers; i < servers.length; i++) {
+            untilFree = Math.min(untilFree, Math.max(0, servers[i].nextAvailableTime - this.now));
+        }
+        return untilFree + ahead * this.meanServiceTime / this.numSelfServers;
+    }
+
+    private StringBuilder appendQueues() {
+        Server[] servers = this.manager.getServers();
+        for (int i = 0; i < this.numHumanServers; i++) {
+            this.answer.append(' ').append(servers[i].getQueueSize());
+        }
+        if (this.numSelfServers > 0) {
+            this.answer.append(' ').append(servers[this.numHumanServers].getQueueSize());
+        }
+        return this.answer;
+    }
+}
@@ -0,0 +1,114 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * A Distribution of the times that inter-arrival or service times are drawn from.
+ * Distributions are immutable and precompute whatever they need up front, so a
+ * single one can be shared by any number of concurrent runs: every run draws
+ * from it with its own random stream.
+ */
+public interface Distribution {
+
+    /**
+     * Draws a time.
+     *
+     * @param rng the random stream of the run drawing the time.
+     * @return the time drawn.
+     */
+    double sample(Random rng);
+
+    /**
+     * The mean of the times drawn.
+     *
+     * @return the mean time.
+     */
+    double getMean();
+
+    /**
+     * Reads a distribution from a spec of its name and parameters:
+     * "exponential:rate", "lognormal:mean,standardDeviation", "gamma:shape,scale",
+     * "hyperexponential:p1,rate1,p2,rate2,..." or "empirical:file" for a file of
+     * observed times, which are binned into a histogram. The parameters must be
+     * finite, rates, means, shapes and scales positive, standard deviations and
+     * phase probabilities non-negative; the phase probabilities are normalised.
+     *
+     * @param spec the name and parameters, separated by a colon.
+     * @return the distribution.
+     * @throws IllegalArgumentException if the spec can't be read.
+     */
+    static Distribution parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("distribution spec has no parameters: " + spec);
+        }
+        String name = spec.substring(0, colon);
+        String parameters = spec.substring(colon + 1);
+        if (name.equals("empirical")) {
+            return EmpiricalDistribution.fromFile(parameters);
+        }
+        String[] fields = parameters.split(",");
+        double[] p = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            p[i] = Double.parseDouble(fields[i]);
+            if (!Double.isFinite(p[i])) {
+                throw new IllegalArgumentException("parameter not finite: " + spec);
+            }
+        }
+        switch (name) {
+            case "exponential":
+                checkCount(spec, p, 1);
+                if (p[0] <= 0) {
+                    throw new IllegalArgumentException("rate not positive: " + spec);
+                }
+                return new ExponentialDistribution(p[0]);
+            case "lognormal":
+                checkCount(spec, p, 2);
+                if (p[0] <= 0 || p[1] < 0) {
+                    throw new IllegalArgumentException(
+                        "mean not positive or standard deviation negative: " + spec);
+                }
+                return new LognormalDistribution(p[0], p[1]);
+            case "gamma":
+                checkCount(spec, p, 2);
+                if (p[0] <= 0 || p[1] <= 0) {
+                    throw new IllegalArgumentException("shape or scale not positive: " + spec);
+                }
+                return new GammaDistribution(p[0], p[1]);
+            case "hyperexponential":
+                if (p.length % 2 != 0) {
+                    throw new IllegalArgumentException(
+                        "phases need a probability and a rate each: " + spec);
+                }
+                double[] probabilities = new double[p.length / 2];
+                double[] rates = new double[p.length / 2];
+                double total = 0;
+                for (int i = 0; i < probabilities.length; i++) {
+                    probabilities[i] = p[2 * i];
+                    rates[i] = p[2 * i + 1];
+                    if (probabilities[i] < 0 || rates[i] <= 0) {
+                        throw new IllegalArgumentException(
+                            "probability negative or rate not positive: " + spec);
+                    }
+                    total += probabilities[i];
+                }
+                if (total <= 0) {
+                    throw new IllegalArgumentException("probabilities are all 0: " + spec);
+                }
+                return new HyperexponentialDistribution(probabilities, rates);
+            default:
+                throw new IllegalArgumentException("unknown distribution: " + name);
+        }
+    }
+
+    /**
+     * Checks that a spec has as many parameters as its distribution takes.
+     *
+     * @throws IllegalArgumentException if it doesn't.
+     */
+    private static void checkCount(String spec, double[] parameters, int count) {
+        if (parameters.length != count) {
+            throw new IllegalArgumentException("expected " + count + " parameters: " + spec);
+        }
+    }
+}
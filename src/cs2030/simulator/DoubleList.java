@@ -0,0 +1,28 @@
+package cs2030.simulator;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive doubles, for recording long series of
+ * observations without boxing every one of them.
+ */
+class DoubleList {
+
+    private double[] values = new double[1024];
+    private int size = 0;
+
+    void add(double x) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+        this.values[this.size++] = x;
+    }
+
+    double get(int i) {
+        return this.values[i];
+    }
+
+    int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,117 @@
+package cs2030.simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times distributed like an empirical histogram, e.g. of measured service times.
+ * A draw picks a bin from an AliasTable, in O(1) however many bins there are, and
+ * then a time uniformly within the bin.
+ */
+public class EmpiricalDistribution implements Distribution {
+
+    static final int DEFAULT_BINS = 100;
+
+    private final double[] edges; // bin i spans edges[i] to edges[i + 1]
+    private final double[] weights;
+    private final AliasTable bins;
+
+    /**
+     * Constructs the distribution out of a histogram.
+     *
+     * @param edges   the increasing edges of the bins, one more than the weights;
+     *                a bin whose edges are equal holds exactly that time.
+     * @param weights how much of the times fall into each bin, e.g. counts.
+     */
+    public EmpiricalDistribution(double[] edges, double[] weights) {
+        assert (edges.length == weights.length + 1 && weights.length > 0);
+        this.edges = edges.clone();
+        this.weights = weights.clone();
+        this.bins = new AliasTable(this.weights);
+    }
+
+    /**
+     * Bins observed times into a histogram of equally wide bins, or into a single
+     * bin of no width if they are all the same, so that they are all drawn as
+     * that time.
+     *
+     * @param observations the observed times.
+     * @param numBins      how many bins to use.
+     * @return the distribution of the histogram.
+     */
+    public static EmpiricalDistribution fromObservations(double[] observations, int numBins) {
+        assert (observations.length > 0 && numBins > 0);
+        double min = Arrays.stream(observations).min().getAsDouble();
+        double max = Arrays.stream(observations).max().getAsDouble();
+        if (max == min) { // a point mass
+            return new EmpiricalDistribution(new double[] {min, min},
+                new double[] {observations.length});
+        }
+        double width = (max - min) / numBins;
+        double[] edges = new double[numBins + 1];
+        for (int i = 0; i <= numBins; i++) {
+            edges[i] = min + i * width;
+        }
+        double[] counts = new double[numBins];
+        for (double x : observations) {
+            counts[Math.min((int) ((x - min) / width), numBins - 1)]++;
+        }
+        return new EmpiricalDistribution(edges, counts);
+    }
+
+    /**
+     * Reads observed times from a file, separated by whitespace, and bins them
+     * into DEFAULT_BINS bins.
+     *
+     * @param path the file of observed times.
+     * @return the distribution of the observed times.
+     * @throws UncheckedIOException if the file can't be read.
+     * @throws IllegalArgumentException if it holds no times, or any time that
+     *     isn't a finite, non-negative number.
+     */
+    public static EmpiricalDistribution fromFile(String path) {
+        try {
+            String contents = new String(Files.readAllBytes(Paths.get(path))).trim();
+            if (contents.isEmpty()) {
+                throw new IllegalArgumentException("no observed times in " + path);
+            }
+            double[] observations = Arrays.stream(contents.split("\\s+"))
+                                        .mapToDouble(Double::parseDouble).toArray();
+            for (double x : observations) {
+                if (!(x >= 0) || Double.isInfinite(x)) {
+                    throw new IllegalArgumentException("observed time not finite and "
+                                                           + "non-negative in " + path);
+                }
+            }
+            return fromObservations(observations, DEFAULT_BINS);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read observed times from " + path, e);
+        }
+    }
+
+    @Override
+    public double sample(Random rng) {
+        int bin = this.bins.sample(rng);
+        return this.edges[bin] + rng.nextDouble() * (this.edges[bin + 1] - this.edges[bin]);
+    }
+
+    @Override
+    public double getMean() {
+        double total = 0;
+        double mean = 0;
+        for (int i = 0; i < this.weights.length; i++) {
+            total += this.weights[i];
+            mean += this.weights[i] * (this.edges[i] + this.edges[i + 1]) / 2;
+        }
+        return mean / total;
+    }
+
+    @Override
+    public String toString() {
+        return "empirical histogram of " + this.weights.length + " bins";
+    }
+}
@@ -0,0 +1,25 @@
+package cs2030.simulator;
+
+/**
+ * An EventHandler handles the events of a kind registered with a Manager, beyond
+ * the built-in kinds of the Customers (arrives, waits, served, done, leaves),
+ * e.g. the end of a rest or a shift, or a periodic snapshot of the shop. Each
+ * event carries a payload given when it was scheduled, such as the ID of the
+ * server or Customer it concerns. The Manager dispatches the built-in kinds with
+ * a switch on their state codes and only looks up a handler for the registered
+ * kinds, so registering kinds costs the built-in ones nothing.
+ */
+@FunctionalInterface
+public interface EventHandler {
+
+    /**
+     * Handles an event of the kind this handler was registered for.
+     *
+     * @param manager the Manager operating, whose events these are.
+     * @param now     when the event happens.
+     * @param payload what the event was scheduled with, e.g. a server ID.
+     * @return when the event happens again, with the same payload, no earlier
+     *     than now, or NaN if it doesn't.
+     */
+    double handle(Manager manager, double now, int payload);
+}
@@ -0,0 +1,39 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * Exponentially distributed times, as drawn by RandomGenerator by default.
+ */
+public class ExponentialDistribution implements Distribution {
+
+    private final double rate;
+
+    /**
+     * Constructs the distribution.
+     *
+     * @param rate the rate, 1 / mean.
+     */
+    public ExponentialDistribution(double rate) {
+        this.rate = rate;
+    }
+
+    @Override
+    public double sample(Random rng) {
+        return -Math.log(rng.nextDouble()) / this.rate;
+    }
+
+    @Override
+    public double getMean() {
+        return 1 / this.rate;
+    }
+
+    public double getRate() {
+        return this.rate;
+    }
+
+    @Override
+    public String toString() {
+        return "exponential:" + this.rate;
+    }
+}
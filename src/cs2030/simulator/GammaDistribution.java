@@ -0,0 +1,63 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * Gamma distributed times, drawn by Marsaglia and Tsang's squeeze method, which
+ * takes a normal and a uniform variate and rarely has to retry. For a shape below
+ * 1, a time of shape + 1 is scaled down by U^(1 / shape).
+ */
+public class GammaDistribution implements Distribution {
+
+    private final double shape;
+    private final double scale;
+    private final double d; // of Marsaglia and Tsang, for shape >= 1
+    private final double c;
+
+    /**
+     * Constructs the distribution.
+     *
+     * @param shape the shape k, the squared inverse of the coefficient of variation.
+     * @param scale the scale theta, so that the mean is k theta.
+     */
+    public GammaDistribution(double shape, double scale) {
+        assert (shape > 0 && scale > 0);
+        this.shape = shape;
+        this.scale = scale;
+        this.d = (shape >= 1 ? shape : shape + 1) - 1.0 / 3;
+        this.c = 1 / Math.sqrt(9 * this.d);
+    }
+
+    @Override
+    public double sample(Random rng) {
+        double x;
+        while (true) {
+            double z = rng.nextGaussian();
+            double v = 1 + this.c * z;
+            if (v <= 0) {
+                continue;
+            }
+            v = v * v * v;
+            double u = rng.nextDouble();
+            if (u < 1 - 0.0331 * z * z * z * z
+                    || Math.log(u) < 0.5 * z * z + this.d * (1 - v + Math.log(v))) {
+                x = this.d * v;
+                break;
+            }
+        }
+        if (this.shape < 1) {
+            x *= Math.pow(rng.nextDouble(), 1 / this.shape);
+        }
+        return x * this.scale;
+    }
+
+    @Override
+    public double getMean() {
+        return this.shape * this.scale;
+    }
+
+    @Override
+    public String toString() {
+        return "gamma:" + this.shape + "," + this.scale;
+    }
+}
@@ -0,0 +1,86 @@
+package cs2030.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+
+/**
+ * The GroupArrivalCheck guards the handling of a whole group in one event
+ * against deciding differently from its members arriving one after the other.
+ * It simulates fixed, seeded shops with groups of a fixed size twice, the second
+ * time with the members arriving as Customers of their own at the time of their
+ * leader (see Manager.arriveOneByOne), and fails unless every Customer goes
+ * through the same events at the same times and servers in both runs, and the
+ * statistics agree. The shops include groups larger than the number of idle
+ * servers, rests, greedy Customers and self-checkout servers.
+ * Run it after compiling as "java -cp classes cs2030.simulator.GroupArrivalCheck";
+ * it exits with status 1 if any check fails.
+ */
+public class GroupArrivalCheck {
+
+    private static final String[][] CASES = {
+        {"1 1 0 2 6 0.1 1 1 0 0", "fixed:3"}, // one server, groups of 3
+        {"2 3 0 2 3000 1.5 1 1 0.2 0.3", "fixed:4"}, // rests and greedy
+        {"3 2 2 2 3000 2 1 1 0.1 0.5", "fixed:5"}, // self-checkout
+        {"4 4 1 1 3000 1 1.2 1 0 1", "fixed:2"}, // everyone greedy
+        {"5 2 0 0 1000 1 1 1 0 0", "fixed:3"}, // nobody queues
+        {"6 1 3 3 3000 2.5 1 1 0.3 0.5", "fixed:6"} // more members than servers
+    };
+
+    private GroupArrivalCheck() {
+    }
+
+    /**
+     * Runs every check and exits with status 1 if any of them fails.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        boolean passed = true;
+        for (String[] c : CASES) {
+            SimulationConfig config = SimulationConfig.read(new Scanner(c[0]));
+            boolean ok = check(config, GroupSizes.parse(c[1]));
+            passed &= ok;
+            System.out.println((ok ? "OK   " : "FAIL ") + c[0] + " --groups=" + c[1]);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks that a shop with groups decides as the same Customers arriving one
+     * at a time would.
+     */
+    private static boolean check(SimulationConfig config, GroupSizes sizes) {
+        SimulationConfig withGroups = config.withGroupSizes(sizes);
+        Manager grouped = new Manager(withGroups);
+        grouped.operate();
+        Manager alone = new Manager(withGroups);
+        alone.arriveOneByOne();
+        alone.operate();
+        return byCustomer(logLines(grouped)).equals(byCustomer(logLines(alone)))
+                   && grouped.getStatistics().toString()
+                          .equals(alone.getStatistics().toString());
+    }
+
+    private static List<String> logLines(Manager manager) {
+        String logs = manager.showLogs();
+        List<String> lines = new ArrayList<>(List.of(logs.split("\n")));
+        lines.remove(lines.size() - 1); // the statistics
+        return lines;
+    }
+
+    /**
+     * The log lines of each Customer, in order, by the ID of the Customer.
+     */
+    private static Map<String, List<String>> byCustomer(List<String> lines) {
+        Map<String, List<String>> events = new TreeMap<>();
+        for (String line : lines) {
+            events.computeIfAbsent(line.split(" ")[1], id -> new ArrayList<>()).add(line);
+        }
+        return events;
+    }
+}
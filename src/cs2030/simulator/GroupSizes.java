@@ -0,0 +1,148 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * GroupSizes are the distribution of the sizes of the groups Customers arrive in,
+ * e.g. tour groups and school classes, for batch arrivals: groups rather than
+ * single Customers then arrive at the inter-arrival times, and every member of
+ * a group arrives at the same time. Sizes are either fixed, geometric on 1, 2,
+ * ... with a given mean, or drawn with given weights for the sizes 1 to n, by an
+ * AliasTable.
+ * The distribution is immutable, hence can be shared between concurrent runs.
+ */
+public class GroupSizes {
+
+    private final int fixedSize; // 0 unless the size is fixed
+    private final double geometricMean; // 0 unless the size is geometric
+    private final AliasTable weights; // of the sizes 1 to n, null unless weighted
+    private final double mean;
+
+    private GroupSizes(int fixedSize, double geometricMean, double[] sizeWeights) {
+        this.fixedSize = fixedSize;
+        this.geometricMean = geometricMean;
+        if (sizeWeights == null) {
+            this.weights = null;
+            this.mean = fixedSize > 0 ? fixedSize : geometricMean;
+        } else {
+            this.weights = new AliasTable(sizeWeights);
+            double total = 0;
+            double sum = 0;
+            for (int i = 0; i < sizeWeights.length; i++) {
+                total += sizeWeights[i];
+                sum += (i + 1) * sizeWeights[i];
+            }
+            this.mean = sum / total;
+        }
+    }
+
+    /**
+     * Groups that all have the same size.
+     *
+     * @param size the size of every group, at least 1.
+     * @return the group sizes.
+     */
+    public static GroupSizes fixed(int size) {
+        assert size >= 1;
+        return new GroupSizes(size, 0, null);
+    }
+
+    /**
+     * Groups of geometric sizes 1, 2, ..., the size after each member being the
+     * last with the same probability.
+     *
+     * @param mean the mean size, at least 1.
+     * @return the group sizes.
+     */
+    public static GroupSizes geometric(double mean) {
+        assert mean >= 1;
+        return new GroupSizes(0, mean, null);
+    }
+
+    /**
+     * Groups of sizes 1 to n, with the given weights.
+     *
+     * @param sizeWeights the non-negative weights of the sizes 1 to n, not all 0.
+     * @return the group sizes.
+     */
+    public static GroupSizes weighted(double[] sizeWeights) {
+        return new GroupSizes(0, 0, sizeWeights.clone());
+    }
+
+    /**
+     * Reads group sizes from "fixed:size", "geometric:mean" or
+     * "weights:w1,w2,...,wn" for the weights of the sizes 1 to n.
+     *
+     * @param spec the kind of sizes and their parameters, separated by a colon.
+     * @return the group sizes.
+     * @throws IllegalArgumentException if the spec can't be read.
+     */
+    public static GroupSizes parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("group size spec has no parameters: " + spec);
+        }
+        String kind = spec.substring(0, colon);
+        String[] fields = spec.substring(colon + 1).split(",");
+        switch (kind) {
+            case "fixed":
+                int size = Integer.parseInt(fields[0]);
+                if (size < 1) {
+                    throw new IllegalArgumentException("groups need a member: " + spec);
+                }
+                return fixed(size);
+            case "geometric":
+                double mean = Double.parseDouble(fields[0]);
+                if (mean < 1) {
+                    throw new IllegalArgumentException("mean group size below 1: " + spec);
+                }
+                return geometric(mean);
+            case "weights":
+                double[] sizeWeights = new double[fields.length];
+                double total = 0;
+                for (int i = 0; i < fields.length; i++) {
+                    sizeWeights[i] = Double.parseDouble(fields[i]);
+                    if (sizeWeights[i] < 0) {
+                        throw new IllegalArgumentException("negative weight: " + spec);
+                    }
+                    total += sizeWeights[i];
+                }
+                if (total <= 0) {
+                    throw new IllegalArgumentException("weights are all 0: " + spec);
+                }
+                return weighted(sizeWeights);
+            default:
+                throw new IllegalArgumentException("unknown group sizes: " + spec);
+        }
+    }
+
+    /**
+     * Draws the size of a group.
+     *
+     * @param rng the random stream of the run drawing the size.
+     * @return the size, at least 1.
+     */
+    int sample(Random rng) {
+        if (this.fixedSize > 0) {
+            return this.fixedSize;
+        }
+        if (this.weights != null) {
+            return this.weights.sample(rng) + 1;
+        }
+        if (this.geometricMean == 1) {
+            return 1;
+        }
+        double u = 1 - rng.nextDouble(); // in (0, 1]
+        double size = 1 + Math.floor(Math.log(u) / Math.log(1 - 1 / this.geometricMean));
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The mean size of the groups.
+     *
+     * @return the mean size.
+     */
+    public double getMean() {
+        return this.mean;
+    }
+}
@@ -0,0 +1,62 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * Hyperexponentially distributed times: a mixture of exponential phases, for
+ * times that are more variable than exponential ones. Each draw picks a phase
+ * from an AliasTable and then draws an exponential time at its rate.
+ */
+public class HyperexponentialDistribution implements Distribution {
+
+    private final double[] probabilities;
+    private final double[] rates;
+    private final AliasTable phases;
+
+    /**
+     * Constructs the distribution.
+     *
+     * @param probabilities the weight of each phase, non-negative and not all 0,
+     *                      normalised into its probability.
+     * @param rates         the rate of each phase.
+     */
+    public HyperexponentialDistribution(double[] probabilities, double[] rates) {
+        assert (probabilities.length == rates.length && rates.length > 0);
+        double total = 0;
+        for (double p : probabilities) {
+            total += p;
+        }
+        assert total > 0;
+        this.probabilities = new double[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            this.probabilities[i] = probabilities[i] / total;
+        }
+        this.rates = rates.clone();
+        this.phases = new AliasTable(this.probabilities);
+    }
+
+    @Override
+    public double sample(Random rng) {
+        int phase = this.phases.sample(rng);
+        return -Math.log(1 - rng.nextDouble()) / this.rates[phase];
+    }
+
+    @Override
+    public double getMean() {
+        double mean = 0;
+        for (int i = 0; i < this.rates.length; i++) {
+            mean += this.probabilities[i] / this.rates[i];
+        }
+        return mean;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder("hyperexponential:");
+        for (int i = 0; i < this.rates.length; i++) {
+            res.append(i == 0 ? "" : ",").append(this.probabilities[i]).append(',')
+                .append(this.rates[i]);
+        }
+        return res.toString();
+    }
+}
@@ -0,0 +1,245 @@
+package cs2030.simulator;
+
+/**
+ * A LockstepEngine advances many replications of the same small shop together,
+ * one arrival at a time across all of them, instead of running a Manager per
+ * replication. The state of every replication lives in primitive arrays indexed
+ * by replication: the arrival clocks, when each server is free next, and ring
+ * buffers of when each waiting Customer starts getting served. The random
+ * streams are java.util.Random's generator kept as one long per replication,
+ * seeded exactly like RandomGenerator, so the loops over replications only touch
+ * flat arrays.
+ * Because every server serves its queue in FIFO order, each arrival can be
+ * settled on the spot: a Customer joining a human server starts when that
+ * server is free next (including its rest), and a Customer joining the shared
+ * self-checkout queue starts when the earliest self-checkout server is free
+ * next. A replication ends up with the same statistics as a Manager with the
+ * same seed would report, in distribution; with a single human server the
+ * random numbers are even drawn in the same order, so the statistics agree
+ * exactly.
+ */
+public class LockstepEngine {
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final SimulationConfig config;
+    private final int numReplications;
+    private final int numServers;
+    private final int numSelfServers;
+    private final int qmax;
+
+    // random streams, one state per replication, as seeded by RandomGenerator:
+    private final long[] rngArrival;
+    private final long[] rngService;
+    private final long[] rngRest;
+    private final long[] rngRestPeriod;
+    private final long[] rngCustomerType;
+
+    // shop state per replication:
+    private final double[] now; // arrival clock
+    private final double[] arrivalDraw; // next inter-arrival time
+    private final double[] typeDraw; // decides if the next Customer is greedy
+    private final double[] serverFree; // [replication * numServers + server]
+    private final double[] serverStarts; // ring of start times per human server queue
+    private final int[] serverHead;
+    private final int[] serverWaiting;
+    private final double[] selfFree; // [replication * numSelfServers + server]
+    private final double[] sharedStarts; // ring of start times of the shared queue
+    private final int[] sharedHead;
+    private final int[] sharedWaiting;
+
+    // statistics per replication:
+    private final int[] customersLeft;
+    private final double[] totalWaitingTime;
+
+    /**
+     * Constructs an engine for replications 0 to numReplications - 1 of a shop,
+     * seeded like the ReplicationController seeds them.
+     *
+     * @param config          the shop, replication 0 uses its seed.
+     * @param numReplications how many replications to advance together.
+     * @throws IllegalArgumentException if the times of the shop aren't exponential
+     *     or its Customers have priority classes.
+     */
+    public LockstepEngine(SimulationConfig config, int numReplications) {
+        if (!config.isMarkovian()) {
+            throw new IllegalArgumentException("lock-step needs exponential times and FIFO: "
+                                                   + config);
+        }
+        this.config = config;
+        this.numReplications = numReplications;
+        this.numServers = config.getNumServers();
+        this.numSelfServers = config.getNumSelfServers();
+        this.qmax = config.getQmax();
+        int k = numReplications;
+        this.rngArrival = new long[k];
+        this.rngService = new long[k];
+        this.rngRest = new long[k];
+        this.rngRestPeriod = new long[k];
+        this.rngCustomerType = new long[k];
+        for (int r = 0; r < k; r++) {
+            long seed = config.getSeed() + (long) r * ReplicationController.SEED_STRIDE;
+            this.rngArrival[r] = scramble(seed);
+            this.rngService[r] = scramble(seed + 1);
+            this.rngRest[r] = scramble(seed + 2);
+            this.rngRestPeriod[r] = scramble(seed + 3);
+            this.rngCustomerType[r] = scramble(seed + 4);
+        }
+        this.now = new double[k];
+        this.arrivalDraw = new double[k];
+        this.typeDraw = new double[k];
+        this.serverFree = new double[k * this.numServers];
+        this.serverStarts = new double[k * this.numServers * this.qmax];
+        this.serverHead = new int[k * this.numServers];
+        this.serverWaiting = new int[k * this.numServers];
+        this.selfFree = new double[k * this.numSelfServers];
+        this.sharedStarts = new double[k * this.qmax];
+        this.sharedHead = new int[k];
+        this.sharedWaiting = new int[k];
+        this.customersLeft = new int[k];
+        this.totalWaitingTime = new double[k];
+    }
+
+    /**
+     * Runs all the replications to the end of the day.
+     *
+     * @return the statistics of every replication, in replication order.
+     */
+    public RunStatistics[] run() {
+        double lambda = this.config.getLambda();
+        double pGreedy = this.config.getPGreedy();
+        int numArrivals = this.config.getNumArrivalEvents();
+        for (int j = 0; j < numArrivals; j++) {
+            // the same draw for every replication, in one straight loop:
+            for (int r = 0; r < this.numReplications; r++) {
+                this.typeDraw[r] = nextDouble(this.rngCustomerType, r);
+                this.arrivalDraw[r] = -Math.log(nextDouble(this.rngArrival, r)) / lambda;
+            }
+            for (int r = 0; r < this.numReplications; r++) {
+                arrive(r, this.now[r], this.typeDraw[r] < pGreedy);
+            }
+            for (int r = 0; r < this.numReplications; r++) {
+                this.now[r] += this.arrivalDraw[r];
+            }
+        }
+        RunStatistics[] results = new RunStatistics[this.numReplications];
+        for (int r = 0; r < this.numReplications; r++) {
+            RunStatistics stats = new RunStatistics();
+            stats.customersEntered = numArrivals;
+            stats.customersLeft = this.customersLeft[r];
+            stats.customersServed = numArrivals - this.customersLeft[r];
+            stats.totalWaitingTime = this.totalWaitingTime[r];
+            results[r] = stats;
+        }
+        return results;
+    }
+
+    /**
+     * Settles the arrival of a Customer in one replication, the way the Manager
+     * would: the first idle server, else the first server that can be queued at
+     * (or the one with the shortest queue, for the greedy), else the Customer leaves.
+     */
+    private void arrive(int r, double t, boolean isGreedy) {
+        int servers = r * this.numServers;
+        int selfServers = r * this.numSelfServers;
+        // Customers that have started being served by now are no longer waiting:
+        for (int i = servers; i < servers + this.numServers; i++) {
+            while (this.serverWaiting[i] > 0
+                       && this.serverStarts[i * this.qmax + this.serverHead[i]] <= t) {
+                this.serverHead[i] = (this.serverHead[i] + 1) % this.qmax;
+                this.serverWaiting[i]--;
+            }
+        }
+        while (this.sharedWaiting[r] > 0
+                   && this.sharedStarts[r * this.qmax + this.sharedHead[r]] <= t) {
+            this.sharedHead[r] = (this.sharedHead[r] + 1) % this.qmax;
+            this.sharedWaiting[r]--;
+        }
+        for (int i = servers; i < servers + this.numServers; i++) {
+            if (this.serverFree[i] <= t) {
+                serve(r, i, t);
+                return;
+            }
+        }
+        for (int i = selfServers; i < selfServers + this.numSelfServers; i++) {
+            if (this.selfFree[i] <= t) {
+                this.selfFree[i] = t + serviceTime(r);
+                return;
+            }
+        }
+        // nobody idle, find the first queueable server and the shortest one:
+        int queueable = -1;
+        int shortest = -1;
+        int shortestSize = Integer.MAX_VALUE;
+        for (int i = 0; i < this.numServers + this.numSelfServers; i++) {
+            int size = i < this.numServers ? this.serverWaiting[servers + i]
+                           : this.sharedWaiting[r];
+            if (size < this.qmax) {
+                if (queueable < 0) {
+                    queueable = i;
+                }
+                if (size < shortestSize) {
+                    shortest = i;
+                    shortestSize = size;
+                }
+            }
+        }
+        if (queueable < 0) {
+            this.customersLeft[r]++;
+            return;
+        }
+        int chosen = isGreedy ? shortest : queueable;
+        if (chosen < this.numServers) {
+            int i = servers + chosen;
+            double start = this.serverFree[i];
+            int tail = (this.serverHead[i] + this.serverWaiting[i]) % this.qmax;
+            this.serverStarts[i * this.qmax + tail] = start;
+            this.serverWaiting[i]++;
+            this.totalWaitingTime[r] += start - t;
+            serve(r, i, start);
+        } else { // the earliest free self-checkout server takes the Customer in turn:
+            int best = selfServers;
+            for (int i = selfServers + 1; i < selfServers + this.numSelfServers; i++) {
+                if (this.selfFree[i] < this.selfFree[best]) {
+                    best = i;
+                }
+            }
+            double start = this.selfFree[best];
+            int tail = (this.sharedHead[r] + this.sharedWaiting[r]) % this.qmax;
+            this.sharedStarts[r * this.qmax + tail] = start;
+            this.sharedWaiting[r]++;
+            this.totalWaitingTime[r] += start - t;
+            this.selfFree[best] = start + serviceTime(r);
+        }
+    }
+
+    /**
+     * A human server serves a Customer from the given start, and may rest once done.
+     */
+    private void serve(int r, int server, double start) {
+        double done = start + serviceTime(r);
+        if (nextDouble(this.rngRest, r) < this.config.getPRest()) {
+            done -= Math.log(nextDouble(this.rngRestPeriod, r)) / this.config.getRho();
+        }
+        this.serverFree[server] = done;
+    }
+
+    private double serviceTime(int r) {
+        return -Math.log(nextDouble(this.rngService, r)) / this.config.getMu();
+    }
+
+    /*                   java.util.Random, unrolled                   */
+    private static long scramble(long seed) {
+        return (seed ^ MULTIPLIER) & MASK;
+    }
+
+    private static double nextDouble(long[] states, int r) {
+        long first = (states[r] * MULTIPLIER + ADDEND) & MASK;
+        long second = (first * MULTIPLIER + ADDEND) & MASK;
+        states[r] = second;
+        return (((long) (int) (first >>> 22) << 27) + (int) (second >>> 21)) * DOUBLE_UNIT;
+    }
+}
@@ -0,0 +1,47 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * Lognormally distributed times, for heavy-tailed service times. The distribution
+ * is given by the mean and standard deviation of the times themselves, which are
+ * turned into the parameters of the underlying normal distribution once.
+ */
+public class LognormalDistribution implements Distribution {
+
+    private final double mean;
+    private final double standardDeviation;
+    private final double logMean;
+    private final double logStandardDeviation;
+
+    /**
+     * Constructs the distribution.
+     *
+     * @param mean              the mean time.
+     * @param standardDeviation the standard deviation of the times.
+     */
+    public LognormalDistribution(double mean, double standardDeviation) {
+        assert (mean > 0 && standardDeviation >= 0);
+        this.mean = mean;
+        this.standardDeviation = standardDeviation;
+        double logVariance = Math.log(1 + (standardDeviation * standardDeviation)
+                                              / (mean * mean));
+        this.logMean = Math.log(mean) - logVariance / 2;
+        this.logStandardDeviation = Math.sqrt(logVariance);
+    }
+
+    @Override
+    public double sample(Random rng) {
+        return Math.exp(this.logMean + this.logStandardDeviation * rng.nextGaussian());
+    }
+
+    @Override
+    public double getMean() {
+        return this.mean;
+    }
+
+    @Override
+    public String toString() {
+        return "lognormal:" + this.mean + "," + this.standardDeviation;
+    }
+}
@@ -0,0 +1,166 @@
+package cs2030.simulator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MacroBenchmark runs whole scenarios, such as those of the
+ * WorkloadGenerator, end to end and appends how each went to a results file, so
+ * that versions of the simulator can be compared on the same scenarios.
+ * Every scenario runs in a fresh JVM, so that one run's heap, JIT and garbage
+ * don't skew the next, which simulates it without logs and reports the wall
+ * time, the events simulated a second, the time spent collecting garbage and
+ * the peak resident memory (VmHWM, from /proc/self/status on Linux, else -1).
+ * Run it as "java -cp classes cs2030.simulator.MacroBenchmark label results.csv
+ * scenario.in...", where the label names the version benchmarked. Scenarios
+ * running past -Dbench.timeoutSeconds=... (600 by default) are stopped and
+ * recorded as timed out; -Dbench.jvmOptions="..." passes options such as -Xmx to
+ * the JVMs running the scenarios.
+ */
+public class MacroBenchmark {
+
+    static final long DEFAULT_TIMEOUT_SECONDS = 600;
+    static final String HEADER = "label,scenario,customers,servers,status,wall_seconds,"
+                                     + "events,events_per_second,gc_millis,peak_rss_kb";
+    private static final String CHILD = "--child";
+
+    private MacroBenchmark() {
+    }
+
+    /**
+     * Runs the scenarios one by one, or, in a JVM started by the benchmark, one
+     * scenario.
+     *
+     * @param args the label, the results file and the scenario files, or
+     *             "--child" and the scenario file in a JVM started by the benchmark.
+     * @throws IOException if a file can't be read or written.
+     * @throws InterruptedException if interrupted while waiting for a scenario.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals(CHILD)) {
+            System.out.println(runScenario(Paths.get(args[1])));
+            return;
+        }
+        if (args.length < 3) {
+            System.err.println("usage: MacroBenchmark label results.csv scenario.in...");
+            System.exit(2);
+        }
+        String label = args[0];
+        Path results = Paths.get(args[1]);
+        long timeoutSeconds = Long.getLong("bench.timeoutSeconds", DEFAULT_TIMEOUT_SECONDS);
+        if (!Files.exists(results)) {
+            Files.write(results, (HEADER + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        for (int i = 2; i < args.length; i++) {
+            Path scenario = Paths.get(args[i]);
+            String row = label + "," + scenario.getFileName() + "," + describe(scenario) + ","
+                             + spawn(scenario, timeoutSeconds);
+            try (Writer out = Files.newBufferedWriter(results, StandardCharsets.US_ASCII,
+                StandardOpenOption.APPEND)) {
+                out.write(row + "\n"); // as each finishes, in case a later one hangs
+            }
+            System.out.println(row);
+        }
+    }
+
+    /**
+     * Runs a scenario in a fresh JVM.
+     *
+     * @return the status and measurements as CSV fields.
+     */
+    private static String spawn(Path scenario, long timeoutSeconds)
+        throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin"
+                          + File.separator + "java";
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        String options = System.getProperty("bench.jvmOptions", "").trim();
+        if (!options.isEmpty()) {
+            command.addAll(List.of(options.split("\\s+")));
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+            MacroBenchmark.class.getName(), CHILD, scenario.toString()));
+        Process child = new ProcessBuilder(command)
+                            .redirectError(ProcessBuilder.Redirect.INHERIT)
+                            .start();
+        if (!child.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            child.destroyForcibly().waitFor();
+            return "timeout,,,,,";
+        }
+        String line;
+        try (BufferedReader in = new BufferedReader(
+            new InputStreamReader(child.getInputStream(), StandardCharsets.US_ASCII))) {
+            line = in.readLine();
+        }
+        if (child.exitValue() != 0 || line == null) {
+            return "failed,,,,,";
+        }
+        return "ok," + line;
+    }
+
+    /**
+     * Runs a scenario in this JVM.
+     *
+     * @return the wall time, events, events a second, garbage collection time and
+     *     peak resident memory as CSV fields.
+     */
+    private static String runScenario(Path scenario) throws IOException {
+        SimulationConfig config = readScenario(scenario);
+        long start = System.nanoTime();
+        Manager manager = new Manager(config, false);
+        manager.operate();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(gc.getCollectionTime(), 0);
+        }
+        long events = manager.getEventCount();
+        return String.format("%.3f,%d,%.0f,%d,%d", seconds, events, events / seconds,
+            gcMillis, peakResidentKilobytes());
+    }
+
+    private static SimulationConfig readScenario(Path scenario) throws IOException {
+        try (Scanner sc = new Scanner(scenario)) {
+            return SimulationConfig.read(sc);
+        }
+    }
+
+    /**
+     * The number of Customers and of servers of a scenario, as CSV fields.
+     */
+    private static String describe(Path scenario) throws IOException {
+        SimulationConfig config = readScenario(scenario);
+        return config.getNumArrivalEvents() + ","
+                   + (config.getNumServers() + config.getNumSelfServers());
+    }
+
+    /**
+     * The peak resident set size of this JVM so far, -1 where /proc isn't there.
+     */
+    private static long peakResidentKilobytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+}
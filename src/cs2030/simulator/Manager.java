@@ -1,9 +1,13 @@
 package cs2030.simulator;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.function.BooleanSupplier;
 
 
 /**
@@ -18,6 +22,8 @@ import java.util.Queue;
  * https://www.comp.nus.edu.sg/~cs2030/RandomGenerator/cs2030/simulator/RandomGenerator.html
  */
 public class Manager {
+    static final int CANCEL_CHECK_EVENTS = 1 << 12;
+
     private final PriorityQueue<Customer> mainQueue;
     private final Queue<String> logs;
     private Server[] myServers;
@@ -25,6 +31,38 @@ public class Manager {
     private final double pGreedy;
     private final RandomGenerator randomGenerator;
     private final int numHumanServers;
+    private final int qmax;
+    private final RunStatistics statistics;
+    private final boolean keepLogs;
+    private final CustomerPool customerPool;
+    private final Server[] queriedServers = new Server[3]; // idle, queueable, shortest
+    private int arrivalsLeft; // customers yet to be generated
+    private double nextArrivalTime;
+    private AsyncLogWriter logWriter = null; // streams the logs instead, if set
+    private final SimulationConfig config;
+    private final CustomerClasses customerClasses; // null for a single class
+    private BucketQueue sharedQueue; // of the selfServers
+    private final GroupSizes groupSizes; // null for Customers arriving alone
+    private Customer[] nextGroup = new Customer[0]; // members after the next leader
+    private int nextGroupSize = 0;
+    private Customer[] arrivingGroup = new Customer[0]; // members arriving now
+    private int arrivingGroupSize = 0;
+    private boolean groupsOneByOne = false; // members arrive as events of their own
+    private int membersArriving = 0; // such events in the mainQueue
+    private int[] idleServers; // indices found by the pass over the servers
+    private int[] queueableServers;
+    private long[] shortestQueues; // heap of (queue size << 32 | queueable index)
+    private PerturbationAnalysis sensitivities = null; // only tracked if asked for
+    private TimeSeriesRecorder timeSeries = null; // only recorded if asked for
+    private int waitingCustomers = 0; // levels of the time series
+    private int busyServers = 0;
+    private int restingServers = 0;
+    private long eventCount = 0;
+    private EventHandler[] eventHandlers = new EventHandler[0]; // of registered kinds
+    private String[] eventNames = new String[0];
+    private int registeredEvents = 0; // scheduled in the mainQueue
+    private int nextEventID = Integer.MIN_VALUE; // below every Customer ID
+    private final byte restEndKind; // of events with the ID of a resting server
 
 
     /**
@@ -43,14 +81,56 @@ public class Manager {
      */
     public Manager(int seed, int numServers, int numSelfServers, int qmax, int numArrivalEvents,
                    double lambda, double mu, double rho, double pRest, double pGreedy) {
+        this(new SimulationConfig(seed, numServers, numSelfServers, qmax, numArrivalEvents,
+            lambda, mu, rho, pRest, pGreedy));
+    }
+
+    /**
+     * Constructs a Manager for the given configuration.
+     *
+     * @param config the inputs of the simulation.
+     */
+    public Manager(SimulationConfig config) {
+        this(config, true);
+    }
+
+    /**
+     * Constructs a Manager that may skip keeping the logs of the day's events,
+     * for when only the statistics of the run are of interest.
+     *
+     * @param config   the inputs of the simulation.
+     * @param keepLogs whether the events are to be logged.
+     */
+    Manager(SimulationConfig config, boolean keepLogs) {
         this.mainQueue = new PriorityQueue<>();
-        this.numHumanServers = numServers;
+        this.config = config;
+        this.numHumanServers = config.getNumServers();
+        this.qmax = config.getQmax();
         this.logs = new LinkedList<>();
-        this.pRest = pRest;
-        this.pGreedy = pGreedy;
-        this.randomGenerator = new RandomGenerator(seed, lambda, mu, rho);
-        initServers(numServers, numSelfServers, qmax);
-        initArrivals(numArrivalEvents);
+        this.keepLogs = keepLogs;
+        this.statistics = new RunStatistics();
+        this.customerPool = new CustomerPool(this.statistics);
+        this.customerClasses = config.getCustomerClasses();
+        if (this.customerClasses != null) {
+            this.statistics.tallyClasses(this.customerClasses);
+        }
+        this.pRest = config.getPRest();
+        this.pGreedy = config.getPGreedy();
+        this.randomGenerator = new RandomGenerator(config.getSeed(),
+            config.getInterArrivalTimes(), config.getServiceTimes(), config.getRho());
+        if (config.getArrivalRates() != null) {
+            this.randomGenerator.varyArrivalRates(config.getArrivalRates());
+        }
+        this.groupSizes = config.getGroupSizes();
+        if (this.groupSizes != null) {
+            this.randomGenerator.arriveInGroups(this.groupSizes);
+        }
+        this.restEndKind = registerEventKind("rest end", (manager, now, serverID) -> {
+            endRest(serverID, now);
+            return Double.NaN;
+        });
+        initServers(config.getNumServers(), config.getNumSelfServers(), config.getQmax());
+        initArrivals(config.getNumArrivalEvents());
     }
 
     /**
@@ -59,25 +139,320 @@ public class Manager {
      * Customers are popped off the mainQueue definitely only if they have
      * a terminal state (i.e. done/leaves).
      * Else, Manager helps the customer decide and adds decided customer back to queue.
+     * The next Customer only enters once the one before has arrived, and the
+     * records of terminal Customers are recycled for the Customers entering later.
+     * Events are dispatched on their kind: the built-in kinds with a switch, the
+     * registered ones to their EventHandlers. The day ends once the last Customer
+     * is done or has left, dropping any registered events still scheduled.
      */
     public void operate() {
-        while (!this.mainQueue.isEmpty()) {
-            Customer currentCustomer = mainQueue.poll();
-            terminateRests(currentCustomer.getPresentTime());
-            if (currentCustomer.firstWaits) {
-                registerEvent(currentCustomer);
+        double now = 0;
+        while (this.mainQueue.size() > this.registeredEvents) {
+            now = processNextEvent();
+        }
+        endDay(now);
+    }
+
+    /**
+     * Operates as operate does, unless told to stop: whether to is checked every
+     * CANCEL_CHECK_EVENTS events, and the day then ends early, with the logs and
+     * statistics of the events handled so far.
+     *
+     * @param isCancelled tells whether to stop, from any thread.
+     * @return whether the day was operated to its end.
+     */
+    public boolean operateUnless(BooleanSupplier isCancelled) {
+        double now = 0;
+        while (this.mainQueue.size() > this.registeredEvents) {
+            if (isCancelled.getAsBoolean()) {
+                endDay(now);
+                return false;
             }
-            if (!isTerminalState(currentCustomer)) {
-                Customer changed = changeCustomerState(currentCustomer);
-                this.mainQueue.add(changed);
-            } else { // customer has terminal state of leaves or done
-                if (isDoneState(currentCustomer)) {
-                    Server s = this.myServers[currentCustomer.serverID - 1];
-                    double exitTime = currentCustomer.getPresentTime();
-                    serverHandlesDone(s, exitTime);
-                }
+            for (int i = 0; i < CANCEL_CHECK_EVENTS
+                                && this.mainQueue.size() > this.registeredEvents; i++) {
+                now = processNextEvent();
             }
         }
+        endDay(now);
+        return true;
+    }
+
+    /**
+     * Closes the time series and the logs being streamed at the end of the day.
+     */
+    private void endDay(double now) {
+        if (this.timeSeries != null) {
+            this.timeSeries.finish(now);
+        }
+        if (this.logWriter != null) {
+            this.logWriter.close();
+            this.logWriter = null;
+        }
+    }
+
+    /**
+     * Takes the next event off the mainQueue and handles it.
+     *
+     * @return when the event happened.
+     */
+    private double processNextEvent() {
+        Customer currentCustomer = mainQueue.poll();
+        double now = currentCustomer.getPresentTime();
+        this.eventCount++;
+        byte kind = currentCustomer.getState();
+        if (kind >= Customer.FIRST_REGISTERED_KIND) {
+            handleRegisteredEvent(currentCustomer, kind, now);
+            return now;
+        }
+        if (kind == Customer.ARRIVES) {
+            if (this.membersArriving > 0) { // the next group is generated by its leader
+                this.membersArriving--;
+            } else {
+                generateNextArrival();
+            }
+        }
+        if (this.keepLogs && currentCustomer.firstWaits) {
+            registerEvent(currentCustomer);
+        }
+        switch (kind) {
+            case Customer.DONE:
+                serverHandlesDone(this.myServers[currentCustomer.serverID - 1], now);
+                this.customerPool.release(currentCustomer);
+                break;
+            case Customer.LEAVES:
+                this.customerPool.release(currentCustomer);
+                break;
+            default:
+                this.mainQueue.add(changeCustomerState(currentCustomer, kind));
+        }
+        return now;
+    }
+
+    /**
+     * Operates up to a given time: handles every event due by then, registered
+     * ones included, and no more. With no arrivals of its own, the Manager can
+     * thus follow Customers that are admitted as they arrive, e.g. in a shop
+     * being watched live.
+     *
+     * @param time the time to operate up to.
+     */
+    void advanceTo(double time) {
+        while (!this.mainQueue.isEmpty()
+                   && this.mainQueue.peek().getPresentTime() <= time) {
+            processNextEvent();
+        }
+    }
+
+    /**
+     * Admits a Customer arriving now from outside, after operating up to now, and
+     * handles the arrival at once.
+     *
+     * @param time          when the Customer arrives, no earlier than any event
+     *                      handled so far.
+     * @param isGreedy      whether the Customer queues greedily.
+     * @param customerClass the priority class of the Customer.
+     * @return the Customer, served, waiting or leaving.
+     */
+    Customer admit(double time, boolean isGreedy, int customerClass) {
+        advanceTo(time);
+        Customer c = this.customerPool.enter(time, isGreedy, customerClass);
+        this.mainQueue.add(c); // the last of the events due now, by its ID
+        processNextEvent();
+        return c;
+    }
+
+    /**
+     * Uses a service time observed in the shop for the next service, rather than
+     * drawing one.
+     *
+     * @param serviceTime the observed service time.
+     */
+    void replayServiceTime(double serviceTime) {
+        this.randomGenerator.replayServiceTime(serviceTime);
+    }
+
+    /**
+     * The servers as they are now, human servers first.
+     *
+     * @return the servers, not to be changed.
+     */
+    Server[] getServers() {
+        return this.myServers;
+    }
+
+    /**
+     * Registers a new kind of event, to be handled by the given handler whenever
+     * an event of that kind is due. Events of registered kinds aren't logged and
+     * don't keep the day going by themselves. The ends of rests are registered
+     * this way by every Manager.
+     *
+     * @param name    the name of the kind, e.g. "shift change".
+     * @param handler handles the events of the kind.
+     * @return the code of the kind, to schedule its events with.
+     * @throws IllegalStateException if no more kinds fit in a byte.
+     */
+    public byte registerEventKind(String name, EventHandler handler) {
+        int index = this.eventHandlers.length;
+        if (Customer.FIRST_REGISTERED_KIND + index > Byte.MAX_VALUE) {
+            throw new IllegalStateException("too many event kinds to register " + name);
+        }
+        this.eventHandlers = Arrays.copyOf(this.eventHandlers, index + 1);
+        this.eventNames = Arrays.copyOf(this.eventNames, index + 1);
+        this.eventHandlers[index] = handler;
+        this.eventNames[index] = name;
+        return (byte) (Customer.FIRST_REGISTERED_KIND + index);
+    }
+
+    /**
+     * Schedules an event of a registered kind with no payload.
+     *
+     * @param kind the code the kind was registered with.
+     * @param time when the event happens.
+     * @throws IllegalArgumentException if the kind hasn't been registered.
+     */
+    public void scheduleEvent(byte kind, double time) {
+        scheduleEvent(kind, time, 0);
+    }
+
+    /**
+     * Schedules an event of a registered kind, whose handler is given the payload.
+     * Events due at the same time happen in the order they were scheduled, before
+     * any Customer's.
+     *
+     * @param kind    the code the kind was registered with.
+     * @param time    when the event happens.
+     * @param payload what the event concerns, e.g. the ID of a server or Customer.
+     * @throws IllegalArgumentException if the kind hasn't been registered.
+     */
+    public void scheduleEvent(byte kind, double time, int payload) {
+        getEventKindName(kind); // checks the kind
+        this.mainQueue.add(this.customerPool.event(kind, time, this.nextEventID++, payload));
+        this.registeredEvents++;
+    }
+
+    /**
+     * The name a kind of event was registered with.
+     *
+     * @param kind the code of the kind.
+     * @return the name of the kind.
+     * @throws IllegalArgumentException if the kind hasn't been registered.
+     */
+    public String getEventKindName(byte kind) {
+        int index = kind - Customer.FIRST_REGISTERED_KIND;
+        if (index < 0 || index >= this.eventHandlers.length) {
+            throw new IllegalArgumentException("unregistered event kind " + kind);
+        }
+        return this.eventNames[index];
+    }
+
+    /**
+     * Hands an event of a registered kind to its handler, and reschedules it or
+     * recycles its record.
+     */
+    private void handleRegisteredEvent(Customer event, byte kind, double now) {
+        double next = this.eventHandlers[kind - Customer.FIRST_REGISTERED_KIND]
+                          .handle(this, now, event.serverID);
+        if (Double.isNaN(next)) {
+            this.registeredEvents--;
+            this.customerPool.release(event);
+        } else {
+            assert next >= now;
+            this.mainQueue.add(event.reschedule(kind, next));
+        }
+    }
+
+    /**
+     * Streams the logs of the day's events to the given output while operating,
+     * one line per event, instead of keeping them. The logs are formatted and
+     * written by a separate thread, and are all written out by the time operate
+     * returns; showLogs then only shows the Customer statistics.
+     *
+     * @param out where the logs are written to, which is flushed but not closed.
+     */
+    public void streamLogsTo(OutputStream out) {
+        this.logWriter = new AsyncLogWriter(out);
+    }
+
+    /**
+     * Streams the logs of the day's events to a compressed file while operating,
+     * as streamLogsTo does, compressing blocks of them on several threads and
+     * indexing the blocks by time, so that any window of the day can be read back
+     * without decompressing the rest (see CompressedLog).
+     *
+     * @param file    where the compressed logs go, next to their index.
+     * @param threads how many blocks to compress at the same time.
+     * @throws IOException if the file can't be created.
+     */
+    public void compressLogsTo(Path file, int threads) throws IOException {
+        this.logWriter = new AsyncLogWriter(new CompressedLog(file, threads));
+    }
+
+    /**
+     * Makes the members of every group arrive as Customers of their own, one
+     * after the other at the time of their leader, instead of in a single event.
+     * The Customers decide the same either way, which GroupArrivalCheck checks
+     * with this. Must be called before operate.
+     */
+    void arriveOneByOne() {
+        this.groupsOneByOne = true;
+    }
+
+    /**
+     * Tracks how the average waiting time responds to lambda and mu while
+     * operating, by perturbation analysis of the same run. Must be called before
+     * operate.
+     *
+     * @throws IllegalStateException if the times drawn aren't exponential.
+     */
+    public void trackSensitivities() {
+        if (!this.config.isMarkovian()) {
+            throw new IllegalStateException(
+                "sensitivities need exponential times and a single class");
+        }
+        this.sensitivities = new PerturbationAnalysis(this.config);
+    }
+
+    /**
+     * The sensitivities of the average waiting time tracked while operating.
+     *
+     * @return the perturbation analysis of the run, null if it wasn't tracked.
+     */
+    public PerturbationAnalysis getSensitivities() {
+        return this.sensitivities;
+    }
+
+    /**
+     * Records the number of Customers waiting, of servers busy and of human servers
+     * resting over the day, in at most maxBuckets buckets. Must be called before
+     * operate.
+     *
+     * @param bucketWidth the initial width of the buckets, which doubles whenever
+     *                    the day outgrows them.
+     * @param maxBuckets  the most buckets to keep, an even number.
+     */
+    public void recordTimeSeries(double bucketWidth, int maxBuckets) {
+        this.timeSeries = new TimeSeriesRecorder(bucketWidth, maxBuckets);
+    }
+
+    /**
+     * The time series recorded while operating.
+     *
+     * @return the recorder, null if the time series weren't recorded.
+     */
+    public TimeSeriesRecorder getTimeSeries() {
+        return this.timeSeries;
+    }
+
+    /**
+     * Tells the time series recorder, if any, the levels from now on.
+     *
+     * @param now when the levels last changed.
+     */
+    private void recordLevels(double now) {
+        if (this.timeSeries != null) {
+            this.timeSeries.record(now, this.waitingCustomers, this.busyServers,
+                this.restingServers);
+        }
     }
 
     /**
@@ -88,11 +463,14 @@ public class Manager {
      * @param exitTime the completion time.
      */
     private void serverHandlesDone(Server s, double exitTime) {
+        this.busyServers--;
         if (!(s instanceof SelfServer)) {
             s = s.doneServing();
             if (this.serverNeedsRest()) {
                 double restUntil = this.assignRestTime(exitTime);
                 s = s.startResting(restUntil);
+                scheduleEvent(this.restEndKind, restUntil, s.serverID);
+                this.restingServers++;
             }
             updateServerArray(s);
         } else {
@@ -100,6 +478,7 @@ public class Manager {
             selfS = selfS.doneServing();
             updateServerArray(selfS);
         }
+        recordLevels(exitTime);
     }
 
     /**
@@ -111,52 +490,101 @@ public class Manager {
      * will be one of the Self-Servers and the Server that finally serves this
      * customer may not necessarily be the same as the one initially assigned.
      *
-     * @param c Customer that's at the head of the priority queue.
+     * @param c    Customer that's at the head of the priority queue.
+     * @param kind the state code of the Customer.
      * @return A modified form of the Customer after the Manager has provided sufficient
      * assistance to help the customer make a decision and change its state.
      */
-    private Customer changeCustomerState(Customer c) {
-        Customer decided = null;
-        if (isArrivesState(c)) {
-            return handleArrivalState(c);
-        } else {
-            if (isServedState(c)) { // served --> done, server depends on what kind:
-                double completionTime = this.getCompletionTime(c.getPresentTime());
-                decided = c.fromServedToDone(completionTime);
-                Server s = this.myServers[c.serverID - 1];
-                if (!(s instanceof SelfServer)) {
-                    Server newServer = s.actuallyServeCustomer(decided.getPresentTime());
-                    this.myServers[s.serverID - 1] = newServer;
-                } else {
-                    SelfServer newServer = (SelfServer) s;
-                    newServer = newServer.actuallyServeCustomer(decided.getPresentTime());
-                    this.myServers[newServer.serverID - 1] = newServer;
-                }
-            }
-            if (isWaitsState(c)) {
-                Server assignedServer = this.myServers[c.serverID - 1];
-                if (!(assignedServer instanceof SelfServer)) { // if human server:
-                    if (assignedServer.isResting
-                            || !assignedServer.isIdle(c.getPresentTime())
-                            || ((!c.equals(assignedServer.waitingQueue.peek())))) {
-                        decided = c.fromWaitsToWaits(assignedServer.nextAvailableTime);
-                    } else {
-                        decided = c.fromWaitsToServed(assignedServer.nextAvailableTime);
-                    }
-                } else { // for selfServers:
-                    double now = c.getPresentTime();
-                    SelfServer nextBestServer = bestSelfServerQuery(now);
-                    // reassign to the nextBestServer first:
-                    c = c.reassignServer(nextBestServer.serverID);
-                    if (nextBestServer.isIdle(now)) {
-                        decided = c.fromWaitsToServed(nextBestServer.nextAvailableTime);
-                    } else {
-                        decided = c.fromWaitsToWaits(nextBestServer.nextAvailableTime);
-                    }
+    private Customer changeCustomerState(Customer c, byte kind) {
+        switch (kind) {
+            case Customer.ARRIVES:
+                return handleArrivalState(c);
+            case Customer.SERVED:
+                return handleServedState(c);
+            case Customer.WAITS:
+                Customer decided = handleWaitsState(c);
+                if (isServedState(decided)) { // done waiting
+                    this.waitingCustomers--;
+                    this.busyServers++;
+                    recordLevels(decided.getPresentTime());
                 }
+                return decided;
+            default:
+                throw new IllegalStateException("not an intermediate state: " + c);
+        }
+    }
+
+    /**
+     * Served Customer gets a completion time and will be done, and the Server
+     * serving, whatever its kind, is busy until then.
+     *
+     * @param c Customer that starts getting served.
+     * @return Customer that is done.
+     */
+    private Customer handleServedState(Customer c) {
+        double completionTime = this.getCompletionTime(c.getPresentTime());
+        if (this.sensitivities != null) {
+            this.sensitivities.serve(c.serverID, c.getEntryTime(),
+                c.getPresentTime(), completionTime);
+        }
+        Customer decided = c.fromServedToDone(completionTime);
+        Server s = this.myServers[c.serverID - 1];
+        if (!(s instanceof SelfServer)) {
+            Server newServer = s.actuallyServeCustomer(decided.getPresentTime(),
+                decided.hasWaited);
+            this.myServers[s.serverID - 1] = newServer;
+        } else {
+            SelfServer newServer = (SelfServer) s;
+            newServer = newServer.actuallyServeCustomer(decided.getPresentTime(),
+                decided.hasWaited);
+            this.myServers[newServer.serverID - 1] = newServer;
+        }
+        return decided;
+    }
+
+    /**
+     * Waiting Customer gets served if its Server is free for it, else waits on.
+     *
+     * @param c Customer that is waiting.
+     * @return Customer that gets served or waits again.
+     */
+    private Customer handleWaitsState(Customer c) {
+        Server assignedServer = this.myServers[c.serverID - 1];
+        if (!(assignedServer instanceof SelfServer)) { // if human server:
+            if (assignedServer.isResting
+                    || !assignedServer.isIdle(c.getPresentTime())
+                    || ((!c.equals(assignedServer.waitingQueue.peek())))) {
+                return c.fromWaitsToWaits(waitUntil(
+                    assignedServer.nextAvailableTime, c.getPresentTime()));
             }
-            return decided;
+            return c.fromWaitsToServed(assignedServer.nextAvailableTime);
         }
+        // for selfServers:
+        double now = c.getPresentTime();
+        SelfServer nextBestServer = bestSelfServerQuery(now);
+        // reassign to the nextBestServer first:
+        c = c.reassignServer(nextBestServer.serverID);
+        if (nextBestServer.isIdle(now) && (this.customerClasses == null
+                || c.getCustomerClass() == this.sharedQueue.peekClass())) {
+            return c.fromWaitsToServed(nextBestServer.nextAvailableTime);
+        }
+        return c.fromWaitsToWaits(waitUntil(nextBestServer.nextAvailableTime, now));
+    }
+
+    /**
+     * When a waiting Customer is to look again at its server. With priority
+     * classes, a Customer of a lower class may find the server free while a
+     * Customer of a higher class is yet to claim it, maybe one with a larger ID
+     * who comes later in the mainQueue; such a Customer looks again just after
+     * now, rather than now, so that the other gets to the server first.
+     *
+     * @param nextAvailableTime when the server is free next.
+     * @param now               the time it is now.
+     * @return when the Customer looks again.
+     */
+    private double waitUntil(double nextAvailableTime, double now) {
+        return this.customerClasses != null && nextAvailableTime <= now
+                   ? Math.nextUp(now) : nextAvailableTime;
     }
 
     /**
@@ -198,46 +626,246 @@ public class Manager {
      * @return Customer that either gets served immediately, waits or leaves.
      */
     private Customer handleArrivalState(Customer c) {
+        if (this.groupSizes != null) {
+            if (!this.groupsOneByOne) {
+                return handleGroupArrival(c);
+            }
+            for (int k = 0; k < this.arrivingGroupSize; k++) { // after c, by their IDs
+                this.mainQueue.add(this.arrivingGroup[k]);
+                this.arrivingGroup[k] = null;
+            }
+            this.membersArriving += this.arrivingGroupSize;
+            this.arrivingGroupSize = 0;
+        }
         Server[] queriedServers = queryServers(c);
         Customer changedCustomer; // to be assigned based on query results
         if (queriedServers[0] != null) { // idleServer exists:
-            Server s = queriedServers[0];
-            changedCustomer = c.fromArrivesToServed(s.serverID);
-            if (!(s instanceof SelfServer)) { // normal server:
-                updateServerArray(s.serveUponArrival());
-            } else { // it's a self server:
-                SelfServer selfServer = (SelfServer) s;
-                updateServerArray(selfServer.serveUponArrival());
-            }
+            changedCustomer = serveUponArrival(c, queriedServers[0]);
         } else if (queriedServers[1] != null) { // queueableServer exists, need to queue:
             Server queueableServer = queriedServers[1];
             Server shortestServer = queriedServers[2];
             // if customer greedy, shall take the shortest server that exists:
-            changedCustomer = (c.isGreedy && shortestServer != null)
-                                  ? c.fromArrivesToWaits(shortestServer.nextAvailableTime,
-                shortestServer.serverID)
-                                  : c.fromArrivesToWaits(queueableServer.nextAvailableTime,
-                queueableServer.serverID);
-            if (c.isGreedy) {
+            if (c.isGreedy && shortestServer != null) {
                 queueableServer = shortestServer;
             }
-            // this is all about adding customers to their assigned Servers' queues:
-            if (!(queueableServer instanceof SelfServer)) {
-                Queue<Customer> newQueue = new LinkedList<>(queueableServer.waitingQueue);
-                newQueue.add(changedCustomer);
-                updateServerArray(queueableServer.addToWaitQueue(newQueue));
-            } else {
-                Queue<Customer> newQueue = new LinkedList<>(SelfServer.sharedQueue);
-                newQueue.add(changedCustomer);
-                SelfServer selfServer = (SelfServer) queueableServer;
-                updateServerArray(selfServer.addToWaitQueue(newQueue));
-            }
+            changedCustomer = joinQueue(c, queueableServer);
         } else { // create terminal state of leaving, server needn't bother:
             changedCustomer = c.fromArrivesToLeaves();
         }
+        if (!isLeavesState(changedCustomer)) {
+            recordLevels(changedCustomer.getPresentTime());
+        }
+        return changedCustomer;
+    }
+
+    /**
+     * An arriving Customer gets served by an idle Server.
+     *
+     * @param c customer that has just arrived.
+     * @param s the idle Server.
+     * @return Customer that gets served.
+     */
+    private Customer serveUponArrival(Customer c, Server s) {
+        Customer changedCustomer = c.fromArrivesToServed(s.serverID);
+        this.busyServers++;
+        if (!(s instanceof SelfServer)) { // normal server:
+            updateServerArray(s.serveUponArrival());
+        } else { // it's a self server:
+            SelfServer selfServer = (SelfServer) s;
+            updateServerArray(selfServer.serveUponArrival());
+        }
+        return changedCustomer;
+    }
+
+    /**
+     * An arriving Customer joins the queue of a Server.
+     *
+     * @param c               customer that has just arrived.
+     * @param queueableServer the Server whose queue isn't full.
+     * @return Customer that waits.
+     */
+    private Customer joinQueue(Customer c, Server queueableServer) {
+        Customer changedCustomer = c.fromArrivesToWaits(queueableServer.nextAvailableTime,
+            queueableServer.serverID);
+        // this is all about adding customers to their assigned Servers' queues,
+        // which are updated in place:
+        if (!(queueableServer instanceof SelfServer)) {
+            Queue<Customer> queue = queueableServer.waitingQueue;
+            queue.add(changedCustomer);
+            updateServerArray(queueableServer.addToWaitQueue(queue));
+        } else {
+            SelfServer selfServer = (SelfServer) queueableServer;
+            Queue<Customer> queue = selfServer.sharedQueue;
+            queue.add(changedCustomer);
+            updateServerArray(selfServer.addToWaitQueue(queue));
+        }
+        this.waitingCustomers++;
         return changedCustomer;
     }
 
+    /**
+     * A whole group arrives in one event: a single pass over the Servers finds
+     * the idle ones and those that can be queued at, counting the idle human
+     * Servers among the latter, and the members, in order of
+     * their IDs, take the idle Servers in order, then join queues as they would
+     * one after the other: the first queue that isn't full, or the shortest for
+     * the greedy, found in a heap of the queue sizes. The members after the leader
+     * are logged as arriving and put in the mainQueue in their new states.
+     *
+     * @param leader the first member of the group, who has just arrived.
+     * @return the leader, who either gets served immediately, waits or leaves.
+     */
+    private Customer handleGroupArrival(Customer leader) {
+        double now = leader.getPresentTime();
+        int numIdle = 0;
+        int numQueueable = 0;
+        for (int i = 0; i < this.myServers.length; i++) { // the single pass
+            Server s = this.myServers[i];
+            boolean isIdle = s.isIdle(now);
+            if (isIdle) {
+                this.idleServers[numIdle++] = i;
+            }
+            // members only queue once every idle Server is taken, and a human
+            // Server taken by an earlier member can then be queued at, as it could
+            // by a member arriving on its own after that one is served:
+            if (i < this.numHumanServers && (isIdle || s.canQueue(now))) {
+                this.queueableServers[numQueueable++] = i;
+            }
+        }
+        if (this.myServers.length > this.numHumanServers) {
+            // every selfServer that isn't idle can be queued at, the first one first:
+            this.queueableServers[numQueueable++] = this.numHumanServers;
+        }
+        int nextIdle = 0;
+        int firstOpen = 0; // queueable servers before it are full
+        int heapSize = -1; // heap not built yet
+        boolean changedLevels = false;
+        Customer decidedLeader = null;
+        for (int k = -1; k < this.arrivingGroupSize; k++) {
+            Customer c = k < 0 ? leader : this.arrivingGroup[k];
+            if (k >= 0) {
+                this.arrivingGroup[k] = null;
+                if (this.keepLogs) {
+                    registerEvent(c);
+                }
+            }
+            Customer changedCustomer;
+            if (nextIdle < numIdle) {
+                changedCustomer = serveUponArrival(c,
+                    this.myServers[this.idleServers[nextIdle++]]);
+            } else {
+                int queueable = -1;
+                if (!c.isGreedy) {
+                    while (firstOpen < numQueueable
+                               && queueSize(this.queueableServers[firstOpen]) >= this.qmax) {
+                        firstOpen++;
+                    }
+                    queueable = firstOpen < numQueueable ? firstOpen : -1;
+                } else {
+                    if (heapSize < 0) {
+                        heapSize = 0;
+                        for (int q = 0; q < numQueueable; q++) {
+                            heapSize = pushQueue(heapSize, q);
+                        }
+                    }
+                    while (heapSize > 0 && queueable < 0) {
+                        long top = this.shortestQueues[0];
+                        heapSize = popQueue(heapSize);
+                        int q = (int) top;
+                        int size = queueSize(this.queueableServers[q]);
+                        if (size == (int) (top >>> 32)) {
+                            queueable = q;
+                            if (size + 1 < this.qmax) {
+                                this.shortestQueues[heapSize] = (long) (size + 1) << 32 | q;
+                                heapSize = siftUp(heapSize);
+                            }
+                        } else if (size < this.qmax) { // others joined since, requeue
+                            heapSize = pushQueue(heapSize, q);
+                        }
+                    }
+                }
+                changedCustomer = queueable < 0 ? c.fromArrivesToLeaves()
+                                      : joinQueue(c,
+                    this.myServers[this.queueableServers[queueable]]);
+            }
+            changedLevels |= !isLeavesState(changedCustomer);
+            if (k < 0) {
+                decidedLeader = changedCustomer;
+            } else {
+                this.mainQueue.add(changedCustomer);
+            }
+        }
+        this.arrivingGroupSize = 0;
+        if (changedLevels) {
+            recordLevels(now);
+        }
+        return decidedLeader;
+    }
+
+    /**
+     * The number of Customers queueing at a Server, shared by the selfServers.
+     */
+    private int queueSize(int serverIndex) {
+        return this.myServers[serverIndex].getQueueSize();
+    }
+
+    /**
+     * Adds a queueable Server with its queue size to the heap of queue sizes.
+     *
+     * @return the new size of the heap.
+     */
+    private int pushQueue(int heapSize, int queueable) {
+        int size = queueSize(this.queueableServers[queueable]);
+        if (size >= this.qmax) {
+            return heapSize;
+        }
+        this.shortestQueues[heapSize] = (long) size << 32 | queueable;
+        return siftUp(heapSize);
+    }
+
+    /**
+     * Restores the heap after adding at index heapSize.
+     *
+     * @return the new size of the heap.
+     */
+    private int siftUp(int heapSize) {
+        long[] heap = this.shortestQueues;
+        int i = heapSize;
+        long key = heap[i];
+        while (i > 0 && heap[(i - 1) / 2] > key) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = key;
+        return heapSize + 1;
+    }
+
+    /**
+     * Removes the smallest key of the heap.
+     *
+     * @return the new size of the heap.
+     */
+    private int popQueue(int heapSize) {
+        long[] heap = this.shortestQueues;
+        int size = heapSize - 1;
+        long key = heap[size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (size > 0) {
+            heap[i] = key;
+        }
+        return size;
+    }
 
     /**
      * Manager queries the Servers to find out whether any are idle or can be queued.
@@ -248,9 +876,7 @@ public class Manager {
      */
     private Server[] queryServers(Customer c) {
         // gather relevant servers:
-        Optional<? extends Server> idleServer = Optional.empty(),
-            queueableServer = Optional.empty(),
-            shortestServer = Optional.empty();
+        Server idleServer = null, queueableServer = null, shortestServer = null;
         boolean foundIdle = false, foundQueueable = false;
         for (Server s : this.myServers) {
             double now = c.getPresentTime();
@@ -258,40 +884,41 @@ public class Manager {
                 s = s.stopResting(now);
                 if (!foundIdle && s.isIdle(now)) {
                     foundIdle = true;
-                    idleServer = Optional.of(s);
+                    idleServer = s;
                 }
                 if (!foundIdle && !foundQueueable && s.canQueue(now)) {
                     foundQueueable = true;
-                    queueableServer = Optional.of(s);
-                    shortestServer = Optional.of(s); // to init first
+                    queueableServer = s;
+                    shortestServer = s; // to init first
                 }
                 if (!foundIdle && foundQueueable && s.canQueue(now)) { // try looking for shortest
-                    if (s.getQueueSize() < shortestServer.get().getQueueSize()) {
-                        shortestServer = Optional.of(s);
+                    if (s.getQueueSize() < shortestServer.getQueueSize()) {
+                        shortestServer = s;
                     }
                 }
             } else { // settle selfServers:
                 SelfServer selfServer = (SelfServer) s;
                 if (!foundIdle && selfServer.isIdle(now)) {
                     foundIdle = true;
-                    idleServer = Optional.of(selfServer);
+                    idleServer = selfServer;
                 }
                 if (!foundIdle && !foundQueueable && selfServer.canQueue(now)) {
                     foundQueueable = true;
-                    queueableServer = Optional.of(s);
-                    shortestServer = Optional.of(s);
+                    queueableServer = s;
+                    shortestServer = s;
                 }
                 if (!foundIdle && foundQueueable && selfServer.canQueue(now)) {
-                    if (selfServer.getQueueSize() < shortestServer.get().getQueueSize()) {
-                        shortestServer = Optional.of(selfServer);
+                    if (selfServer.getQueueSize() < shortestServer.getQueueSize()) {
+                        shortestServer = selfServer;
                     }
                 }
             }
         }
-        return new Server[]{idleServer.orElse(null),
-            queueableServer.orElse(null),
-            shortestServer.orElse(null)};
-        // # todo: question: it said that generic array creation is not allowed why ah? **important**
+        // reuse the same array for every query, the caller only reads it:
+        this.queriedServers[0] = idleServer;
+        this.queriedServers[1] = queueableServer;
+        this.queriedServers[2] = shortestServer;
+        return this.queriedServers;
     }
 
     /**
@@ -304,10 +931,28 @@ public class Manager {
         for (String s : logs) {
             res.append(s).append("\n");
         }
-        res.append(Customer.customerStats());
+        res.append(this.statistics);
         return res.toString();
     }
 
+    /**
+     * Manager reports the Customer statistics of the day.
+     *
+     * @return the statistics tallied so far.
+     */
+    public RunStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * How many events have been taken off the mainQueue while operating.
+     *
+     * @return the number of events simulated.
+     */
+    long getEventCount() {
+        return this.eventCount;
+    }
+
     //=================  HELPERS METHODS: =============================
 
     /*-----------------   INITIALIZERS -------------------------------*/
@@ -322,54 +967,100 @@ public class Manager {
     private void initServers(int numServers, int numSelfServers, int qmax) {
         // create array of servers and then assign to the servers field:
         Server[] servers = new Server[numServers + numSelfServers];
+        int numClasses = this.customerClasses == null
+                             ? 1 : this.customerClasses.getNumClasses();
+        this.sharedQueue = new BucketQueue(numClasses); // for the selfServers
         // the servers array is equal to the size of both
         for (int i = 0; i < numServers; i++) {
-            Server s = new Server(i + 1, qmax);
+            Server s = new Server(i + 1, qmax, numClasses);
             servers[i] = s;
         }
         // now allocate selfservers:
         for (int j = 0; j < numSelfServers; j++) {
-            SelfServer s = new SelfServer(numServers + j + 1, qmax);
+            SelfServer s = new SelfServer(numServers + j + 1, qmax, this.sharedQueue);
             servers[numServers + j] = s;
         }
         this.myServers = servers;
+        if (this.groupSizes != null) {
+            this.idleServers = new int[servers.length];
+            this.queueableServers = new int[numServers + 1];
+            this.shortestQueues = new long[numServers + 1];
+        }
     }
 
     /*                   RANDOMISATION                       */
 
     /**
-     * Initialises arrival timings and then the Customers that arrive.
+     * Initialises the arrivals: the first Customer arrives at 0, and the rest are
+     * generated one at a time, as the Customer before them arrives.
      *
      * @param numArrivalEvents how many customers arrive in the day.
      */
     private void initArrivals(int numArrivalEvents) {
-        // generate arrival times:
-        double now = 0;
-        double[] arrivalTimes = new double[numArrivalEvents];
-        for (int i = 0; i < numArrivalEvents; i++) {
-            arrivalTimes[i] = now;
-            now = getNextArrivalTime(now);
+        this.arrivalsLeft = numArrivalEvents;
+        this.nextArrivalTime = 0;
+        generateNextArrival();
+    }
+
+    /**
+     * Generates the next arriving Customer, if any are left, and adds it to the
+     * mainQueue. Customers are generated in order of arrival, so they get the same
+     * IDs and types as if they had all been generated up front.
+     * When Customers arrive in groups, the whole next group is generated, with
+     * consecutive IDs, but only its leader goes into the mainQueue; the group
+     * generated before, whose leader is arriving now, becomes the arrivingGroup.
+     */
+    private void generateNextArrival() {
+        if (this.groupSizes != null) {
+            generateNextGroup();
+            return;
+        }
+        if (this.arrivalsLeft > 0) {
+            this.arrivalsLeft--;
+            this.mainQueue.add(generateCustomer(this.nextArrivalTime));
+            this.nextArrivalTime = getNextArrivalTime(this.nextArrivalTime);
         }
-        // generate arriving customers based on arrival times:
-        for (double arrivalTime : arrivalTimes) {
-            Customer myCustomer = generateCustomer(arrivalTime);
-            this.mainQueue.add(myCustomer);
+    }
+
+    /**
+     * Generates the next group, its size cut down to the Customers left.
+     */
+    private void generateNextGroup() {
+        Customer[] arriving = this.nextGroup; // swap, so that neither is reallocated
+        this.nextGroup = this.arrivingGroup;
+        this.arrivingGroup = arriving;
+        this.arrivingGroupSize = this.nextGroupSize;
+        this.nextGroupSize = 0;
+        if (this.arrivalsLeft > 0) {
+            int size = Math.min(this.randomGenerator.genGroupSize(), this.arrivalsLeft);
+            this.arrivalsLeft -= size;
+            this.mainQueue.add(generateCustomer(this.nextArrivalTime));
+            if (this.nextGroup.length < size - 1) {
+                this.nextGroup = new Customer[Math.max(size - 1, 2 * this.nextGroup.length)];
+            }
+            for (int k = 0; k < size - 1; k++) {
+                this.nextGroup[k] = generateCustomer(this.nextArrivalTime);
+            }
+            this.nextGroupSize = size - 1;
+            this.nextArrivalTime = getNextArrivalTime(this.nextArrivalTime);
         }
     }
 
     /**
-     * Customer, whether greedy or normal, is generated.
+     * Customer, whether greedy or normal, is generated, of a priority class drawn
+     * from another customer type if there are classes.
      *
      * @param arrivalTime the time the customer had arrived.
      * @return either normal or greedy customer.
      */
     private Customer generateCustomer(double arrivalTime) {
         double prob = this.randomGenerator.genCustomerType();
-        if (prob < this.pGreedy) { // generate greedy customer:
-            return Customer.enterGreedily(arrivalTime);
-        } else {
-            return Customer.enter(arrivalTime);
-        }
+        int customerClass = this.customerClasses == null
+                                || this.customerClasses.getNumClasses() == 1
+                                ? 0 : this.customerClasses.classOf(
+            this.randomGenerator.genCustomerType());
+        // generate greedy customer if need be:
+        return this.customerPool.enter(arrivalTime, prob < this.pGreedy, customerClass);
     }
 
     /**
@@ -394,7 +1085,7 @@ public class Manager {
 
 
     private double getNextArrivalTime(double now) {
-        return now + this.randomGenerator.genInterArrivalTime();
+        return this.randomGenerator.genNextArrivalTime(now);
     }
 
     private double getCompletionTime(double now) {
@@ -404,11 +1095,18 @@ public class Manager {
     /*----------------------------------------------------------*/
 
     /**
-     * Creates a log entry of a customer that's worth logging.
+     * Creates a log entry of a customer that's worth logging, or hands it to the
+     * log writer when the logs are being streamed.
      *
      * @param c a customer worth logging.
      */
     private void registerEvent(Customer c) {
+        if (this.logWriter != null) {
+            boolean hasServer = !isArrivesState(c) && !isLeavesState(c);
+            this.logWriter.publish(c.getPresentTime(), c.getID(), c.getState(), c.isGreedy,
+                hasServer ? c.serverID : Customer.NO_SERVER, c.serverID > this.numHumanServers);
+            return;
+        }
         String log = c.toString();
         if (!isArrivesState(c) && !isLeavesState(c)) {
             log += "" + this.myServers[c.serverID - 1];
@@ -430,43 +1128,31 @@ public class Manager {
     }
 
     /**
-     * Manager looks tells all the Human servers to stop resting now, if
-     * it's beyond their resting timing as allocated by the Manager.
+     * A human server stops resting at the end of its rest, unless it already has,
+     * as it does when a Customer joins its queue.
      *
-     * @param now the time now.
+     * @param serverID the server that was resting.
+     * @param now      when the rest ends.
      */
-    private void terminateRests(double now) {
-        for (int i = 0; i < this.numHumanServers; i++) {
-            updateServerArray(this.myServers[i].stopResting(now));
-        }
+    private void endRest(int serverID, double now) {
+        updateServerArray(this.myServers[serverID - 1].stopResting(now));
+        this.restingServers--;
+        recordLevels(now);
     }
 
 
     /*-----------------   STATE CHECKS ----------------------*/
-    private boolean isTerminalState(Customer c) {
-        return isDoneState(c) || isLeavesState(c);
-    }
-
-    /*                  INTERMEDIATE STATES                        */
+    /*    the event loop switches on the state codes instead      */
     private boolean isArrivesState(Customer c) {
-        return c.getCustomerStatus().equals("arrives");
-    }
-
-    private boolean isWaitsState(Customer c) {
-        return c.getCustomerStatus().equals("waits");
+        return c.getState() == Customer.ARRIVES;
     }
 
     private boolean isServedState(Customer c) {
-        return c.getCustomerStatus().equals("served");
-    }
-
-    /*                   TERMINAL STATES                          */
-    private boolean isDoneState(Customer c) {
-        return c.getCustomerStatus().equals("done");
+        return c.getState() == Customer.SERVED;
     }
 
     private boolean isLeavesState(Customer c) {
-        return c.getCustomerStatus().equals("leaves");
+        return c.getState() == Customer.LEAVES;
     }
     /*-------------------------------------------------------*/
 
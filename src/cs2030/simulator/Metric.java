@@ -0,0 +1,41 @@
+package cs2030.simulator;
+
+/**
+ * The outputs of a simulation run that replications can be summarised over.
+ */
+public enum Metric {
+    AVERAGE_WAIT("average wait"),
+    FRACTION_LEFT("fraction left"),
+    CUSTOMERS_SERVED("customers served"),
+    CUSTOMERS_LEFT("customers left");
+
+    private final String description;
+
+    Metric(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Reads this metric off the statistics of a run.
+     *
+     * @param stats the statistics of a finished run.
+     * @return the value of this metric for that run.
+     */
+    public double of(RunStatistics stats) {
+        switch (this) {
+            case AVERAGE_WAIT:
+                return stats.getAverageWaitingTime();
+            case FRACTION_LEFT:
+                return stats.getFractionLeft();
+            case CUSTOMERS_SERVED:
+                return stats.getCustomersServed();
+            default:
+                return stats.getCustomersEntered() - stats.getCustomersServed();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.description;
+    }
+}
@@ -0,0 +1,122 @@
+package cs2030.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The PerformanceCheck guards Manager.operate against performance regressions.
+ * It runs fixed, seeded workloads and fails when the bytes allocated per event
+ * (as counted by com.sun.management.ThreadMXBean) or the events simulated per
+ * second go past their budgets. Before timing anything it checks the logs of the
+ * golden inputs against the golden logs, out11.in to out13.in, both as kept by
+ * showLogs and as streamed, so that an optimization can't quietly change what the
+ * simulator does.
+ * Run it from the root of the project, after compiling, as
+ * "java -cp classes cs2030.simulator.PerformanceCheck [goldenDirectory]"; it
+ * exits with status 1 if any check fails. The budgets may be overridden with
+ * -Dperf.maxBytesPerEvent=... (for every workload) and
+ * -Dperf.minEventsPerSecond=..., e.g. on a slower machine.
+ */
+public class PerformanceCheck {
+
+    /**
+     * The recorded budget of events a second: a single core simulates several
+     * million today, so this only catches regressions by a large factor.
+     */
+    static final double MIN_EVENTS_PER_SECOND = 1_000_000;
+    private static final int WARM_UP_RUNS = 2;
+    private static final int TIMED_RUNS = 3; // the best of which counts
+
+    private static final String[] GOLDEN_INPUTS = {
+        "1 1 0 1 5 1.0 1.0 0 0 0",
+        "1 2 0 1 10 1.0 1.0 0 0 0",
+        "1 2 0 2 10 1.0 1.0 0 0 0"
+    };
+    private static final String[] GOLDEN_LOGS = {"out11.in", "out12.in", "out13.in"};
+
+    private static final String[] WORKLOADS = {
+        "3 3 2 3 500000 4.0 1.0 1.0 0.1 0.2", // busy shop, rests, greedy, self-checkout
+        "7 1 0 5 500000 0.9 1.0 1.0 0 0", // one server with a long queue
+        "11 5 0 0 500000 4.0 1.0 1.0 0.3 0" // nobody queues, rests only
+    };
+    // the recorded budgets of bytes allocated per event, about 25% above today's:
+    private static final double[] MAX_BYTES_PER_EVENT = {32, 24, 46};
+
+    private PerformanceCheck() {
+    }
+
+    /**
+     * Runs every check and exits with status 1 if any of them fails.
+     *
+     * @param args the directory of the golden logs, "src" if none is given.
+     * @throws IOException if a golden log can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        String goldenDirectory = args.length > 0 ? args[0] : "src";
+        double minEventsPerSecond = Double.parseDouble(System.getProperty(
+            "perf.minEventsPerSecond", String.valueOf(MIN_EVENTS_PER_SECOND)));
+        boolean passed = true;
+        for (int i = 0; i < GOLDEN_INPUTS.length; i++) {
+            String expected = new String(Files.readAllBytes(
+                Paths.get(goldenDirectory, GOLDEN_LOGS[i])), StandardCharsets.US_ASCII);
+            passed &= checkGolden(GOLDEN_INPUTS[i], expected, GOLDEN_LOGS[i]);
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int w = 0; w < WORKLOADS.length; w++) {
+            String workload = WORKLOADS[w];
+            double maxBytesPerEvent = Double.parseDouble(System.getProperty(
+                "perf.maxBytesPerEvent", String.valueOf(MAX_BYTES_PER_EVENT[w])));
+            SimulationConfig config = SimulationConfig.read(new java.util.Scanner(workload));
+            for (int run = 0; run < WARM_UP_RUNS; run++) {
+                new Manager(config, false).operate();
+            }
+            double bytesPerEvent = Double.POSITIVE_INFINITY;
+            double eventsPerSecond = 0;
+            for (int run = 0; run < TIMED_RUNS; run++) {
+                long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                Manager manager = new Manager(config, false);
+                manager.operate();
+                long nanos = System.nanoTime() - start;
+                long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+                long events = manager.getEventCount();
+                bytesPerEvent = Math.min(bytesPerEvent, (double) bytes / events);
+                eventsPerSecond = Math.max(eventsPerSecond, events * 1e9 / nanos);
+            }
+            boolean ok = bytesPerEvent <= maxBytesPerEvent
+                             && eventsPerSecond >= minEventsPerSecond;
+            passed &= ok;
+            System.out.println((ok ? "OK   " : "FAIL ") + workload + ": "
+                                   + String.format("%.1f bytes/event (budget %.1f), "
+                                                       + "%.0f events/s (budget %.0f)",
+                bytesPerEvent, maxBytesPerEvent, eventsPerSecond, minEventsPerSecond));
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks the logs of a golden input, kept and streamed, against its golden log.
+     */
+    private static boolean checkGolden(String input, String expected, String name) {
+        SimulationConfig config = SimulationConfig.read(new java.util.Scanner(input));
+        Manager kept = new Manager(config);
+        kept.operate();
+        String keptLogs = kept.showLogs() + "\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Manager streamed = new Manager(config);
+        streamed.streamLogsTo(out);
+        streamed.operate();
+        String streamedLogs = out.toString(StandardCharsets.US_ASCII) + streamed.showLogs()
+                                  + "\n";
+        boolean ok = keptLogs.equals(expected) && streamedLogs.equals(expected);
+        System.out.println((ok ? "OK   " : "FAIL ") + name + " (" + input + ")");
+        return ok;
+    }
+}
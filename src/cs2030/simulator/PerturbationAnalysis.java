@@ -0,0 +1,96 @@
+package cs2030.simulator;
+
+/**
+ * A PerturbationAnalysis estimates how the average waiting time of a run responds
+ * to the arrival rate lambda and the service rate mu, out of that same run, by
+ * infinitesimal perturbation analysis (IPA) instead of extra simulations.
+ * Every exponential variate X = -ln(U) / rate moves with its rate as
+ * dX/drate = -X / rate, so an arrival time A moves as dA/dlambda = -A / lambda
+ * and a service time S as dS/dmu = -S / mu. Keeping the random numbers U fixed,
+ * these derivatives are carried along the sample path: each server remembers how
+ * the time it is free next moves, a Customer that waited starts when its server
+ * is free and one that did not starts when it arrives, and a Customer is done
+ * once its service time is up. Rest periods do not depend on either rate.
+ * The estimates are unbiased as long as small changes of the rates do not
+ * reorder the events of the run; when Customers are turned away by full queues
+ * or greedy Customers pick between queues they are only approximate.
+ */
+public class PerturbationAnalysis {
+
+    private final double lambda;
+    private final double mu;
+    // how the time each server is free next moves with lambda and with mu:
+    private final double[] freeByLambda;
+    private final double[] freeByMu;
+    private double waitByLambda = 0; // summed over the Customers served
+    private double waitByMu = 0;
+    private int customersServed = 0;
+
+    /**
+     * Constructs the analysis of a run of the given shop.
+     *
+     * @param config the shop being run.
+     */
+    PerturbationAnalysis(SimulationConfig config) {
+        this.lambda = config.getLambda();
+        this.mu = config.getMu();
+        int numServers = config.getNumServers() + config.getNumSelfServers();
+        this.freeByLambda = new double[numServers];
+        this.freeByMu = new double[numServers];
+    }
+
+    /**
+     * Carries the derivatives over a Customer that has started getting served and
+     * now has a known completion time.
+     *
+     * @param serverID       the server serving the Customer.
+     * @param entryTime      when the Customer arrived.
+     * @param startTime      when the Customer started getting served.
+     * @param completionTime when the Customer will be done.
+     */
+    void serve(int serverID, double entryTime, double startTime, double completionTime) {
+        int i = serverID - 1;
+        double entryByLambda = -entryTime / this.lambda;
+        double startByLambda = entryByLambda;
+        double startByMu = 0;
+        if (startTime > entryTime) { // waited for the server to be free:
+            startByLambda = this.freeByLambda[i];
+            startByMu = this.freeByMu[i];
+            this.waitByLambda += startByLambda - entryByLambda;
+            this.waitByMu += startByMu;
+        }
+        this.customersServed++;
+        // the server is free next once done, or after a rest that doesn't move:
+        this.freeByLambda[i] = startByLambda;
+        this.freeByMu[i] = startByMu - (completionTime - startTime) / this.mu;
+    }
+
+    /**
+     * Derivative of the average waiting time with respect to the arrival rate.
+     *
+     * @return d(average wait)/d(lambda), 0 if nobody has been served.
+     */
+    public double getWaitByLambda() {
+        return this.customersServed == 0 ? 0 : this.waitByLambda / this.customersServed;
+    }
+
+    /**
+     * Derivative of the average waiting time with respect to the service rate.
+     *
+     * @return d(average wait)/d(mu), 0 if nobody has been served.
+     */
+    public double getWaitByMu() {
+        return this.customersServed == 0 ? 0 : this.waitByMu / this.customersServed;
+    }
+
+    /**
+     * String representation of the derivatives, one per line.
+     *
+     * @return the derivatives of the average waiting time.
+     */
+    @Override
+    public String toString() {
+        return "d(average wait)/d(lambda): " + String.format("%.5f", getWaitByLambda())
+                   + "\nd(average wait)/d(mu): " + String.format("%.5f", getWaitByMu());
+    }
+}
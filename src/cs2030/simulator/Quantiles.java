@@ -0,0 +1,85 @@
+package cs2030.simulator;
+
+/**
+ * Quantiles of the distributions needed to build confidence intervals.
+ * Only approximations accurate to a few significant digits are used, which is
+ * plenty for the half-widths of simulation estimates.
+ */
+class Quantiles {
+
+    private Quantiles() {
+    }
+
+    /**
+     * Quantile of the standard normal distribution (Acklam's rational approximation,
+     * relative error below 1.2e-9).
+     *
+     * @param p a probability strictly between 0 and 1.
+     * @return z such that P(Z &lt;= z) = p.
+     */
+    static double normal(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02,
+            -2.759285104469687e+02, 1.383577518672690e+02,
+            -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02,
+            -1.556989798598866e+02, 6.680131188771972e+01,
+            -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01,
+            -2.400758277161838e+00, -2.549732539343734e+00,
+            4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01,
+            2.445134137142996e+00, 3.754408661907416e+00};
+        final double pLow = 0.02425;
+        if (p < pLow) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                       / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        } else if (p <= 1 - pLow) {
+            double q = p - 0.5;
+            double r = q * q;
+            return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                       / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+        } else {
+            return -normal(1 - p);
+        }
+    }
+
+    /**
+     * Quantile of Student's t distribution (Hill's algorithm 396).
+     *
+     * @param p   a probability strictly between 0.5 and 1.
+     * @param dof the degrees of freedom, at least 1.
+     * @return t such that P(T &lt;= t) = p.
+     */
+    static double studentT(double p, int dof) {
+        double twoTailed = 2 * (1 - p);
+        double n = dof;
+        if (dof == 1) {
+            return Math.cos(twoTailed * Math.PI / 2) / Math.sin(twoTailed * Math.PI / 2);
+        }
+        if (dof == 2) {
+            return Math.sqrt(2 / (twoTailed * (2 - twoTailed)) - 2);
+        }
+        double a = 1 / (n - 0.5);
+        double b = 48 / (a * a);
+        double c = ((20700 * a / b - 98) * a - 16) * a + 96.36;
+        double d = ((94.5 / (b + c) - 3) / b + 1) * Math.sqrt(a * Math.PI / 2) * n;
+        double x = d * twoTailed;
+        double y = Math.pow(x, 2 / n);
+        if (y > 0.05 + a) {
+            x = normal(twoTailed / 2);
+            y = x * x;
+            if (dof < 5) {
+                c += 0.3 * (n - 4.5) * (x + 0.6);
+            }
+            c = (((0.05 * d * x - 5) * x - 7) * x - 2) * x + b + c;
+            y = (((((0.4 * y + 6.3) * y + 36) * y + 94.5) / c - y - 3) / b + 1) * x;
+            y = a * y * y;
+            y = (y > 0.002) ? Math.exp(y) - 1 : 0.5 * y * y + y;
+        } else {
+            y = ((1 / (((n + 6) / (n * y) - 0.089 * d - 0.822) * (n + 2) * 3)
+                      + 0.5 / (n + 4)) * y - 1) * (n + 1) / (n + 2) + 1 / y;
+        }
+        return Math.sqrt(n * y);
+    }
+}
@@ -13,28 +13,92 @@ public class RandomGenerator {
     private final Random rngRestPeriod;
     private final Random rngTimeoutPeriod;
     private final Random rngCustomerType;
-    private final double customerArrivalRate;
-    private final double customerServiceRate;
+    private final Distribution interArrivalTimes;
+    private final Distribution serviceTimes;
     private final double serverRestingRate;
+    private RateProfile arrivalRates = null; // constant arrival rate if null
+    private Random rngGroupSize = null; // only drawn from for batch arrivals
+    private GroupSizes groupSizes = null;
+    private final int seed;
+    private double[] observedServiceTimes = new double[0]; // ring, replayed first
+    private int observedHead = 0;
+    private int observedCount = 0;
 
     RandomGenerator(int var1, double var2, double var4, double var6) {
+        this(var1, new ExponentialDistribution(var2), new ExponentialDistribution(var4), var6);
+    }
+
+    RandomGenerator(int var1, Distribution interArrivalTimes, Distribution serviceTimes,
+                    double var6) {
         this.rngArrival = new Random((long)var1);
         this.rngService = new Random((long)(var1 + 1));
         this.rngRest = new Random((long)(var1 + 2));
         this.rngRestPeriod = new Random((long)(var1 + 3));
         this.rngCustomerType = new Random((long)(var1 + 4));
         this.rngTimeoutPeriod = new Random((long)(var1 + 5));
-        this.customerArrivalRate = var2;
-        this.customerServiceRate = var4;
+        this.interArrivalTimes = interArrivalTimes;
+        this.serviceTimes = serviceTimes;
         this.serverRestingRate = var6;
+        this.seed = var1;
     }
 
     double genInterArrivalTime() {
-        return -Math.log(this.rngArrival.nextDouble()) / this.customerArrivalRate;
+        return this.interArrivalTimes.sample(this.rngArrival);
+    }
+
+    /**
+     * Makes the arrivals non-homogeneous Poisson, with a rate that varies over the
+     * day, instead of drawing inter-arrival times.
+     */
+    void varyArrivalRates(RateProfile profile) {
+        this.arrivalRates = profile;
+    }
+
+    double genNextArrivalTime(double now) {
+        return this.arrivalRates == null ? now + this.genInterArrivalTime()
+                   : this.arrivalRates.nextArrival(now, this.rngArrival);
+    }
+
+    /**
+     * Makes Customers arrive in groups of the given sizes. The sizes have a
+     * stream of their own, apart from the streams seed to seed + 5 of this and
+     * of the replications seeded after it.
+     */
+    void arriveInGroups(GroupSizes sizes) {
+        this.groupSizes = sizes;
+        this.rngGroupSize = new Random(((long) this.seed << 32) + 6);
+    }
+
+    int genGroupSize() {
+        return this.groupSizes.sample(this.rngGroupSize);
+    }
+
+    /**
+     * Queues a service time observed in the shop, to be used for the next service
+     * instead of drawing one. Observed times are used in the order they came.
+     */
+    void replayServiceTime(double serviceTime) {
+        if (this.observedCount == this.observedServiceTimes.length) {
+            double[] larger = new double[Math.max(16, 2 * this.observedCount)];
+            for (int i = 0; i < this.observedCount; i++) {
+                larger[i] = this.observedServiceTimes[
+                    (this.observedHead + i) % this.observedServiceTimes.length];
+            }
+            this.observedServiceTimes = larger;
+            this.observedHead = 0;
+        }
+        this.observedServiceTimes[(this.observedHead + this.observedCount++)
+                                      % this.observedServiceTimes.length] = serviceTime;
     }
 
     double genServiceTime() {
-        return -Math.log(this.rngService.nextDouble()) / this.customerServiceRate;
+        if (this.observedCount > 0) {
+            double serviceTime = this.observedServiceTimes[this.observedHead];
+            this.observedHead = (this.observedHead + 1) % this.observedServiceTimes.length;
+            this.observedCount--;
+            return serviceTime;
+        }
+        return this.serviceTimes.sample(this.rngService);
     }
 
     double genRandomRest() {
@@ -0,0 +1,320 @@
+package cs2030.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A RareEventEstimator estimates how likely Customers are to leave a shop whose
+ * queues are so long that hardly anyone ever does, by multilevel splitting
+ * instead of simulating billions of Customers.
+ * Since inter-arrival, service and rest times are all exponential, the shop is a
+ * continuous-time Markov chain over the number of Customers at each human server,
+ * which human servers are resting and the number of Customers at the
+ * self-checkout, with the same routing as the Manager's. The chain regenerates
+ * whenever the shop is empty and nobody rests, so the fraction of Customers that
+ * leave is E[Customers leaving per cycle] / E[Customers arriving per cycle].
+ * The denominator is not rare and is estimated from plain cycles. For the
+ * numerator, the number of Customers in the shop is split into levels up to the
+ * least number at which the shop can be full: a fixed number of trajectories is
+ * started from the states in which the previous stage first entered a level, and
+ * the fraction that reaches the next level before the shop empties estimates one
+ * factor of the probability of getting that far. Only the last stage runs the
+ * trajectories on to the end of their cycles and counts the Customers that leave.
+ * The whole estimator is repeated independently until the confidence interval of
+ * the loss probability is narrow enough relative to it.
+ */
+public class RareEventEstimator {
+
+    static final int DEFAULT_EFFORT = 1000; // trajectories per stage
+    private static final int MIN_REPETITIONS = 10; // before trusting the interval
+
+    private final int numServers;
+    private final int numSelfServers;
+    private final int qmax;
+    private final double lambda;
+    private final double mu;
+    private final double rho;
+    private final double pRest;
+    private final double pGreedy;
+    private final double relativeHalfWidth;
+    private final double confidence;
+    private final int effort;
+    private final int maxRepetitions;
+    private final int[] levels; // numbers of Customers in the shop
+    private final SplittableRandom random;
+
+    // layout of a state: Customers at each human server, whether each is resting,
+    // Customers at the self-checkout, Customers in the shop, servers resting.
+    private final int self;
+    private final int total;
+    private final int numResting;
+    private final int stateSize;
+
+    // tallies of the trajectories being simulated:
+    private long events = 0;
+    private long arrivals = 0;
+    private long losses = 0;
+    private double timeFull = 0;
+    private boolean hitFull = false; // by the trajectory being simulated
+    private int hitsFull = 0; // trajectories that filled the shop
+
+    /**
+     * Constructs an estimator with 95% confidence intervals.
+     *
+     * @param config            the shop, seeding the estimator.
+     * @param relativeHalfWidth the target half-width relative to the estimate, e.g. 0.1.
+     * @param effort            how many trajectories to simulate per stage.
+     * @param maxRepetitions    the budget of repetitions of the estimator.
+     * @throws IllegalArgumentException if the times of the shop aren't exponential.
+     */
+    public RareEventEstimator(SimulationConfig config, double relativeHalfWidth, int effort,
+                              int maxRepetitions) {
+        if (!config.isMarkovian()) {
+            throw new IllegalArgumentException("not a Markov chain: " + config);
+        }
+        assert (relativeHalfWidth > 0 && effort > 0 && config.getLambda() > 0);
+        this.numServers = config.getNumServers();
+        this.numSelfServers = config.getNumSelfServers();
+        this.qmax = config.getQmax();
+        this.lambda = config.getLambda();
+        this.mu = config.getMu();
+        this.rho = config.getRho();
+        this.pRest = config.getPRest();
+        this.pGreedy = config.getPGreedy();
+        this.relativeHalfWidth = relativeHalfWidth;
+        this.confidence = ReplicationController.DEFAULT_CONFIDENCE;
+        this.effort = effort;
+        this.maxRepetitions = maxRepetitions;
+        this.random = new SplittableRandom(config.getSeed());
+        this.self = 2 * this.numServers;
+        this.total = this.self + 1;
+        this.numResting = this.self + 2;
+        this.stateSize = this.self + 3;
+        // a resting server may be full without serving anyone:
+        int fullest = this.pRest > 0 ? this.qmax : this.qmax + 1;
+        int leastFull = this.numServers * fullest
+                            + (this.numSelfServers > 0 ? this.numSelfServers + this.qmax : 0);
+        this.levels = new int[Math.max(leastFull - 1, 0)];
+        for (int j = 0; j < this.levels.length; j++) {
+            this.levels[j] = j + 2; // the first arrival of a cycle always reaches 1
+        }
+    }
+
+    /**
+     * Repeats the estimator until the loss probability is precise enough or the
+     * budget runs out.
+     *
+     * @return the estimates and how much simulating they took.
+     */
+    public RareEventReport run() {
+        SampleStatistics loss = new SampleStatistics();
+        SampleStatistics full = new SampleStatistics();
+        SampleStatistics fractionFull = new SampleStatistics();
+        int done = 0;
+        boolean converged = false;
+        while (!converged && done < this.maxRepetitions) {
+            double[] estimate = repeat();
+            loss.add(estimate[0]);
+            full.add(estimate[1]);
+            fractionFull.add(estimate[2]);
+            done++;
+            converged = done >= MIN_REPETITIONS && loss.getMean() > 0
+                            && loss.isPrecise(this.confidence, this.relativeHalfWidth);
+        }
+        return new RareEventReport(loss, full, fractionFull, this.confidence, done,
+            converged, this.events, this.levels.length);
+    }
+
+    /**
+     * One independent run of the splitting estimator.
+     *
+     * @return the loss probability, the probability that a cycle fills the shop
+     *     and the fraction of time the shop is full.
+     */
+    private double[] repeat() {
+        // stage 0: plain cycles, for the denominators and the first entrances
+        resetTallies();
+        List<int[]> entrances = new ArrayList<>();
+        double cycleTime = 0;
+        for (int n = 0; n < this.effort; n++) {
+            int[] s = new int[this.stateSize];
+            boolean entered = this.levels.length == 0;
+            this.hitFull = false;
+            do {
+                cycleTime += step(s);
+                if (!entered && s[this.total] >= this.levels[0]) {
+                    entered = true;
+                    entrances.add(s.clone());
+                }
+            } while (!isEmpty(s));
+            if (this.hitFull) {
+                this.hitsFull++;
+            }
+        }
+        double arrivalsPerCycle = (double) this.arrivals / this.effort;
+        double timePerCycle = cycleTime / this.effort;
+        if (this.levels.length == 0) { // the shop fills up at the first Customer
+            return new double[] {(double) this.losses / this.arrivals,
+                (double) this.hitsFull / this.effort, this.timeFull / cycleTime};
+        }
+        double reached = (double) entrances.size() / this.effort;
+        // intermediate stages: from one level to the next, or back to empty
+        for (int j = 1; j < this.levels.length && reached > 0; j++) {
+            List<int[]> next = new ArrayList<>();
+            for (int n = 0; n < this.effort; n++) {
+                int[] s = entrances.get(this.random.nextInt(entrances.size())).clone();
+                do {
+                    step(s);
+                } while (s[this.total] < this.levels[j] && !isEmpty(s));
+                if (s[this.total] >= this.levels[j]) {
+                    next.add(s);
+                }
+            }
+            reached *= (double) next.size() / this.effort;
+            entrances = next;
+        }
+        if (reached == 0) {
+            return new double[] {0, 0, 0};
+        }
+        // last stage: on to the end of the cycle, counting who leaves
+        resetTallies();
+        for (int n = 0; n < this.effort; n++) {
+            int[] s = entrances.get(this.random.nextInt(entrances.size())).clone();
+            this.hitFull = false;
+            do {
+                step(s);
+            } while (!isEmpty(s));
+            if (this.hitFull) {
+                this.hitsFull++;
+            }
+        }
+        double lossesPerCycle = reached * this.losses / this.effort;
+        double timeFullPerCycle = reached * this.timeFull / this.effort;
+        return new double[] {lossesPerCycle / arrivalsPerCycle,
+            reached * this.hitsFull / this.effort, timeFullPerCycle / timePerCycle};
+    }
+
+    private void resetTallies() {
+        this.arrivals = 0;
+        this.losses = 0;
+        this.timeFull = 0;
+        this.hitsFull = 0;
+        this.hitFull = false;
+    }
+
+    /**
+     * Simulates the next event of a trajectory of the chain.
+     *
+     * @param s the state, updated in place.
+     * @return how long it took for the event to happen.
+     */
+    private double step(int[] s) {
+        this.events++;
+        double rate = this.lambda;
+        for (int i = 0; i < this.numServers; i++) {
+            if (s[this.numServers + i] == 1) {
+                rate += this.rho;
+            } else if (s[i] > 0) {
+                rate += this.mu;
+            }
+        }
+        int selfServing = Math.min(s[this.self], this.numSelfServers);
+        rate += selfServing * this.mu;
+        double dt = -Math.log(1 - this.random.nextDouble()) / rate;
+        if (route(s, false) < 0) {
+            this.timeFull += dt;
+            this.hitFull = true;
+        }
+        double u = this.random.nextDouble() * rate;
+        if (u < this.lambda) {
+            arrive(s);
+            return dt;
+        }
+        u -= this.lambda;
+        for (int i = 0; i < this.numServers; i++) {
+            if (s[this.numServers + i] == 1) {
+                if (u < this.rho) { // done resting
+                    s[this.numServers + i] = 0;
+                    s[this.numResting]--;
+                    return dt;
+                }
+                u -= this.rho;
+            } else if (s[i] > 0) {
+                if (u < this.mu) { // done serving, maybe resting next
+                    s[i]--;
+                    s[this.total]--;
+                    if (this.random.nextDouble() < this.pRest) {
+                        s[this.numServers + i] = 1;
+                        s[this.numResting]++;
+                    }
+                    return dt;
+                }
+                u -= this.mu;
+            }
+        }
+        if (selfServing > 0) {
+            s[this.self]--;
+            s[this.total]--;
+        }
+        return dt;
+    }
+
+    /**
+     * An arrival goes where the Manager would send it, or leaves.
+     */
+    private void arrive(int[] s) {
+        this.arrivals++;
+        int server = route(s, this.pGreedy > 0 && this.random.nextDouble() < this.pGreedy);
+        if (server < 0) {
+            this.losses++;
+            return;
+        }
+        s[server]++;
+        s[this.total]++;
+    }
+
+    /**
+     * Where an arriving Customer goes: the first idle server, else the first server
+     * that can be queued at, or the one with the shortest queue for the greedy.
+     *
+     * @return index of the count in the state, -1 if the Customer leaves.
+     */
+    private int route(int[] s, boolean isGreedy) {
+        for (int i = 0; i < this.numServers; i++) {
+            if (s[i] == 0 && s[this.numServers + i] == 0) {
+                return i;
+            }
+        }
+        if (s[this.self] < this.numSelfServers) {
+            return this.self;
+        }
+        int queueable = -1;
+        int shortestSize = Integer.MAX_VALUE;
+        for (int i = 0; i <= this.numServers; i++) {
+            int queueSize;
+            int index;
+            if (i < this.numServers) {
+                index = i;
+                queueSize = s[this.numServers + i] == 1 ? s[i] : s[i] - 1;
+            } else if (this.numSelfServers > 0) {
+                index = this.self;
+                queueSize = s[this.self] - this.numSelfServers;
+            } else {
+                break;
+            }
+            if (queueSize < this.qmax && queueSize < shortestSize) {
+                if (!isGreedy) {
+                    return index;
+                }
+                queueable = index;
+                shortestSize = queueSize;
+            }
+        }
+        return queueable;
+    }
+
+    private boolean isEmpty(int[] s) {
+        return s[this.total] == 0 && s[this.numResting] == 0;
+    }
+}
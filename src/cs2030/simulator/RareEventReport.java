@@ -0,0 +1,113 @@
+package cs2030.simulator;
+
+/**
+ * A RareEventReport holds the estimates of a RareEventEstimator and how much
+ * simulating they took, next to what plain simulation would have needed for
+ * the same precision.
+ */
+public class RareEventReport {
+
+    private final SampleStatistics loss;
+    private final SampleStatistics full;
+    private final SampleStatistics fractionFull;
+    private final double confidence;
+    private final int repetitions;
+    private final boolean converged;
+    private final long events;
+    private final int levels;
+
+    RareEventReport(SampleStatistics loss, SampleStatistics full,
+                    SampleStatistics fractionFull, double confidence, int repetitions,
+                    boolean converged, long events, int levels) {
+        this.loss = loss;
+        this.full = full;
+        this.fractionFull = fractionFull;
+        this.confidence = confidence;
+        this.repetitions = repetitions;
+        this.converged = converged;
+        this.events = events;
+        this.levels = levels;
+    }
+
+    /**
+     * The long-run fraction of arriving Customers that leave.
+     *
+     * @return the estimated loss probability.
+     */
+    public double getLossProbability() {
+        return this.loss.getMean();
+    }
+
+    public double getLossHalfWidth() {
+        return this.loss.halfWidth(this.confidence);
+    }
+
+    /**
+     * The probability that the shop gets full before it next empties, once a
+     * Customer has entered the empty shop.
+     *
+     * @return the estimated probability of a full shop per cycle.
+     */
+    public double getFullProbability() {
+        return this.full.getMean();
+    }
+
+    /**
+     * The long-run fraction of the time that the shop is full.
+     *
+     * @return the estimated fraction of time full.
+     */
+    public double getFractionOfTimeFull() {
+        return this.fractionFull.getMean();
+    }
+
+    public int getRepetitions() {
+        return this.repetitions;
+    }
+
+    public boolean isConverged() {
+        return this.converged;
+    }
+
+    /**
+     * How many events of the Markov chain were simulated in all.
+     *
+     * @return the number of events simulated.
+     */
+    public long getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Roughly how many Customers plain simulation would have to run for an
+     * interval of the loss probability as narrow relative to it, counting them
+     * as independent.
+     *
+     * @return the number of arrivals plain simulation needs, infinite if no
+     *     Customer was estimated to leave.
+     */
+    public double getCrudeArrivals() {
+        double p = getLossProbability();
+        if (p == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double relativeHalfWidth = getLossHalfWidth() / p;
+        double z = Quantiles.normal(0.5 + this.confidence / 2);
+        return z * z * (1 - p) / (p * relativeHalfWidth * relativeHalfWidth);
+    }
+
+    @Override
+    public String toString() {
+        return "loss probability: " + String.format("%.4e +/- %.4e", getLossProbability(),
+            getLossHalfWidth()) + "\n"
+                   + "full shop probability per cycle: " + String.format("%.4e +/- %.4e",
+            getFullProbability(), this.full.halfWidth(this.confidence)) + "\n"
+                   + "fraction of time full: " + String.format("%.4e +/- %.4e",
+            getFractionOfTimeFull(), this.fractionFull.halfWidth(this.confidence)) + "\n"
+                   + "repetitions: " + this.repetitions
+                   + (this.converged ? " (target precision reached)" : " (budget exhausted)")
+                   + " over " + this.levels + " levels\n"
+                   + "events simulated: " + this.events + " (plain simulation needs about "
+                   + String.format("%.3e", getCrudeArrivals()) + " customers)";
+    }
+}
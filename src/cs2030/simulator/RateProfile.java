@@ -0,0 +1,183 @@
+package cs2030.simulator;
+
+import java.util.Random;
+
+/**
+ * A RateProfile makes the arrival rate vary over the day, e.g. with a lunch and
+ * an evening peak, for non-homogeneous Poisson arrivals. The day is split into
+ * segments at given times, and the rate is either constant over each segment or
+ * goes linearly from the rate at its start to the rate at the start of the next
+ * one. The profile repeats every period.
+ * Arrivals are generated one at a time by thinning with a bound per segment:
+ * within a segment, candidates come at the largest rate of that segment and are
+ * kept with probability rate / bound, and a candidate beyond the end of the
+ * segment is dropped for a fresh start at the next segment, which the memoryless
+ * exponential allows. Constant segments thus never reject a candidate, and
+ * linear ones only as much as their rate changes across them.
+ * The profile is immutable, hence can be shared between concurrent runs.
+ */
+public class RateProfile {
+
+    private final boolean linear;
+    private final double period;
+    private final double[] starts; // of the segments, starting at 0
+    private final double[] rates; // at the starts of the segments
+    private final double[] bounds; // largest rate of each segment
+    private final double meanRate;
+
+    /**
+     * Constructs a profile.
+     *
+     * @param linear whether the rate goes linearly across each segment, rather than
+     *               staying constant.
+     * @param period how long until the profile repeats, e.g. a day.
+     * @param starts the increasing start times of the segments, the first at 0.
+     * @param rates  the arrival rate at the start of each segment.
+     */
+    public RateProfile(boolean linear, double period, double[] starts, double[] rates) {
+        assert (starts.length == rates.length && starts.length > 0 && starts[0] == 0);
+        assert (starts[starts.length - 1] < period);
+        this.linear = linear;
+        this.period = period;
+        this.starts = starts.clone();
+        this.rates = rates.clone();
+        this.bounds = new double[starts.length];
+        double area = 0;
+        for (int i = 0; i < starts.length; i++) {
+            double length = end(i) - this.starts[i];
+            double rateAtEnd = rateAtEnd(i);
+            this.bounds[i] = Math.max(this.rates[i], rateAtEnd);
+            area += length * (this.rates[i] + rateAtEnd) / 2;
+        }
+        this.meanRate = area / period;
+        assert this.meanRate > 0;
+    }
+
+    /**
+     * Reads a profile from "constant:period,t0,r0,t1,r1,..." or
+     * "linear:period,t0,r0,t1,r1,...", where t0 is 0, the starts increase and stay
+     * below the period, which is finite, and the rates are finite, non-negative and
+     * not all 0.
+     *
+     * @param spec the kind of profile and its parameters, separated by a colon.
+     * @return the profile.
+     * @throws IllegalArgumentException if the spec can't be read.
+     */
+    public static RateProfile parse(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? "" : spec.substring(0, colon);
+        if (!kind.equals("constant") && !kind.equals("linear")) {
+            throw new IllegalArgumentException("unknown rate profile: " + spec);
+        }
+        String[] fields = spec.substring(colon + 1).split(",");
+        if (fields.length < 3 || fields.length % 2 == 0) {
+            throw new IllegalArgumentException("rate profile needs a period and pairs: " + spec);
+        }
+        double period = Double.parseDouble(fields[0]);
+        if (!(period > 0) || Double.isInfinite(period)) {
+            throw new IllegalArgumentException("period not positive and finite: " + spec);
+        }
+        double[] starts = new double[fields.length / 2];
+        double[] rates = new double[fields.length / 2];
+        double total = 0;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = Double.parseDouble(fields[2 * i + 1]);
+            rates[i] = Double.parseDouble(fields[2 * i + 2]);
+            if (i == 0 ? starts[i] != 0 : !(starts[i] > starts[i - 1])) {
+                throw new IllegalArgumentException(
+                    "starts not increasing from 0: " + spec);
+            }
+            if (!(rates[i] >= 0) || Double.isInfinite(rates[i])) {
+                throw new IllegalArgumentException("rate not finite and non-negative: " + spec);
+            }
+            total += rates[i];
+        }
+        if (!(starts[starts.length - 1] < period)) {
+            throw new IllegalArgumentException("start not within the period: " + spec);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("rates are all 0: " + spec);
+        }
+        return new RateProfile(kind.equals("linear"), period, starts, rates);
+    }
+
+    /**
+     * The arrival rate at a given time.
+     *
+     * @param time the time of day, which may be past the period.
+     * @return the arrival rate then.
+     */
+    public double rateAt(double time) {
+        double t = time % this.period;
+        return rateIn(segmentOf(t), t);
+    }
+
+    /**
+     * The average arrival rate over a period.
+     *
+     * @return the mean rate.
+     */
+    public double getMeanRate() {
+        return this.meanRate;
+    }
+
+    /**
+     * Generates the arrival after a given one, by thinning.
+     *
+     * @param now the time of the last arrival.
+     * @param rng the random stream of arrivals of the run.
+     * @return the time of the next arrival.
+     */
+    double nextArrival(double now, Random rng) {
+        double cycles = Math.floor(now / this.period);
+        double offset = cycles * this.period;
+        double t = now - offset;
+        int i = segmentOf(t);
+        while (true) {
+            double end = end(i);
+            if (this.bounds[i] > 0) {
+                t -= Math.log(rng.nextDouble()) / this.bounds[i];
+                if (t < end) {
+                    if (!this.linear || rng.nextDouble() * this.bounds[i] < rateIn(i, t)) {
+                        return offset + t;
+                    }
+                    continue; // rejected, carry on from the candidate
+                }
+            }
+            t = end; // past the segment, start afresh at the next one
+            i++;
+            if (i == this.starts.length) {
+                i = 0;
+                t = 0;
+                offset += this.period;
+            }
+        }
+    }
+
+    private double rateIn(int i, double t) {
+        if (!this.linear) {
+            return this.rates[i];
+        }
+        double fraction = (t - this.starts[i]) / (end(i) - this.starts[i]);
+        return this.rates[i] + fraction * (rateAtEnd(i) - this.rates[i]);
+    }
+
+    private int segmentOf(double t) {
+        int i = this.starts.length - 1;
+        while (this.starts[i] > t) {
+            i--;
+        }
+        return i;
+    }
+
+    private double end(int i) {
+        return i + 1 < this.starts.length ? this.starts[i + 1] : this.period;
+    }
+
+    private double rateAtEnd(int i) {
+        if (!this.linear) {
+            return this.rates[i];
+        }
+        return this.rates[i + 1 < this.rates.length ? i + 1 : 0]; // wraps around
+    }
+}
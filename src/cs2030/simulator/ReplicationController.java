@@ -0,0 +1,160 @@
+package cs2030.simulator;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A ReplicationController keeps on replicating the same shop with different seeds
+ * until the confidence intervals of the chosen Metrics are narrow enough.
+ * Replications are run in batches, in parallel, and the intervals are updated
+ * after every batch (sequential stopping rule). The controller stops as soon as
+ * every Metric has reached the relative half-width asked for, or when the budget
+ * of replications runs out.
+ */
+public class ReplicationController {
+
+    /**
+     * RandomGenerator seeds its 6 streams with seed to seed + 5, so replications are
+     * seeded this far apart to never share a stream.
+     */
+    static final int SEED_STRIDE = 6;
+    static final double DEFAULT_CONFIDENCE = 0.95;
+    private static final int MIN_REPLICATIONS = 10; // before trusting the intervals
+
+    private final SimulationConfig config;
+    private final Metric[] metrics;
+    private final double relativeHalfWidth;
+    private final double confidence;
+    private final int batchSize;
+    private final int maxReplications;
+
+    /**
+     * Constructs a controller with 95% confidence intervals and a batch of
+     * replications per available core.
+     *
+     * @param config            the shop to be replicated, replication 0 uses its seed.
+     * @param relativeHalfWidth the target half-width relative to the mean, e.g. 0.05.
+     * @param maxReplications   the budget of replications.
+     * @param metrics           the Metrics whose intervals have to be narrow enough.
+     */
+    public ReplicationController(SimulationConfig config, double relativeHalfWidth,
+                                 int maxReplications, Metric... metrics) {
+        this(config, relativeHalfWidth, DEFAULT_CONFIDENCE,
+            Runtime.getRuntime().availableProcessors(), maxReplications, metrics);
+    }
+
+    /**
+     * Constructs a controller.
+     *
+     * @param config            the shop to be replicated, replication 0 uses its seed.
+     * @param relativeHalfWidth the target half-width relative to the mean, e.g. 0.05.
+     * @param confidence        the confidence level of the intervals, e.g. 0.95.
+     * @param batchSize         how many replications to run between checks.
+     * @param maxReplications   the budget of replications.
+     * @param metrics           the Metrics whose intervals have to be narrow enough.
+     */
+    public ReplicationController(SimulationConfig config, double relativeHalfWidth,
+                                 double confidence, int batchSize, int maxReplications,
+                                 Metric... metrics) {
+        assert (relativeHalfWidth > 0 && confidence > 0 && confidence < 1);
+        assert (batchSize > 0 && metrics.length > 0);
+        this.config = config;
+        this.metrics = metrics.clone();
+        this.relativeHalfWidth = relativeHalfWidth;
+        this.confidence = confidence;
+        this.batchSize = batchSize;
+        this.maxReplications = maxReplications;
+    }
+
+    /**
+     * Runs batches of replications until the target precision or the budget
+     * is reached. The batches are summarised in replication order, so the report
+     * does not depend on how the replications were scheduled.
+     *
+     * @return the report of the replications that were needed.
+     */
+    public ReplicationReport run() {
+        Map<Metric, SampleStatistics> estimates = new EnumMap<>(Metric.class);
+        for (Metric m : this.metrics) {
+            estimates.put(m, new SampleStatistics());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors());
+        try {
+            int done = 0;
+            boolean converged = false;
+            while (!converged && done < this.maxReplications) {
+                int count = Math.min(this.batchSize, this.maxReplications - done);
+                for (RunStatistics stats : runBatch(pool, this.config, done, count)) {
+                    for (Metric m : this.metrics) {
+                        estimates.get(m).add(m.of(stats));
+                    }
+                }
+                done += count;
+                converged = done >= MIN_REPLICATIONS && isPrecise(estimates);
+            }
+            return new ReplicationReport(done, converged, this.confidence, estimates);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private boolean isPrecise(Map<Metric, SampleStatistics> estimates) {
+        for (SampleStatistics s : estimates.values()) {
+            if (!s.isPrecise(this.confidence, this.relativeHalfWidth)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a single replication of a shop without keeping its logs.
+     *
+     * @param config      the shop to be replicated.
+     * @param replication the index of the replication, 0 uses the seed of config.
+     * @return the statistics of the replication.
+     */
+    static RunStatistics replicate(SimulationConfig config, int replication) {
+        Manager manager = new Manager(config.forReplication(replication), false);
+        manager.operate();
+        return manager.getStatistics();
+    }
+
+    /**
+     * Runs consecutive replications of a shop on a pool of threads.
+     *
+     * @param pool   the threads to run the replications on.
+     * @param config the shop to be replicated.
+     * @param first  the index of the first replication.
+     * @param count  how many replications to run.
+     * @return the statistics of the replications, in replication order.
+     */
+    static List<RunStatistics> runBatch(ExecutorService pool, SimulationConfig config,
+                                        int first, int count) {
+        List<Callable<RunStatistics>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int replication = first + i;
+            tasks.add(() -> replicate(config, replication));
+        }
+        List<RunStatistics> results = new ArrayList<>(count);
+        try {
+            for (Future<RunStatistics> f : pool.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("replications were interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a replication failed", e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,64 @@
+package cs2030.simulator;
+
+import java.util.Map;
+
+/**
+ * A ReplicationReport tells how many replications a ReplicationController needed
+ * and what the confidence intervals of its Metrics ended up as.
+ */
+public class ReplicationReport {
+
+    private final int replications;
+    private final boolean converged;
+    private final double confidence;
+    private final Map<Metric, SampleStatistics> estimates;
+
+    ReplicationReport(int replications, boolean converged, double confidence,
+                      Map<Metric, SampleStatistics> estimates) {
+        this.replications = replications;
+        this.converged = converged;
+        this.confidence = confidence;
+        this.estimates = estimates;
+    }
+
+    public int getReplications() {
+        return this.replications;
+    }
+
+    /**
+     * Whether the target precision was reached before the budget ran out.
+     *
+     * @return true if every Metric is precise enough.
+     */
+    public boolean isConverged() {
+        return this.converged;
+    }
+
+    public double getMean(Metric metric) {
+        return this.estimates.get(metric).getMean();
+    }
+
+    public double getHalfWidth(Metric metric) {
+        return this.estimates.get(metric).halfWidth(this.confidence);
+    }
+
+    /**
+     * One line per Metric with its confidence interval, followed by the
+     * number of replications needed.
+     *
+     * @return String representation of the report.
+     */
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder();
+        for (Map.Entry<Metric, SampleStatistics> e : this.estimates.entrySet()) {
+            res.append(e.getKey()).append(": ")
+                .append(Customer.prettyPrint(e.getValue().getMean())).append(" +/- ")
+                .append(Customer.prettyPrint(e.getValue().halfWidth(this.confidence)))
+                .append("\n");
+        }
+        res.append("replications: ").append(this.replications)
+            .append(this.converged ? " (target precision reached)" : " (budget exhausted)");
+        return res.toString();
+    }
+}
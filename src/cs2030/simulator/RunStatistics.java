@@ -0,0 +1,189 @@
+package cs2030.simulator;
+
+/**
+ * RunStatistics tallies the Customer statistics of a single simulation run.
+ * Every Manager owns its own RunStatistics and hands it to the Customers it
+ * generates, so several Managers can operate at the same time without sharing
+ * any counters.
+ */
+public class RunStatistics {
+
+    int customersEntered = 0; // used for setting IDs
+    int customersServed = 0;
+    int customersLeft = 0;
+    double totalWaitingTime = 0;
+    int totalWaitCounter = 0;
+    private DoubleList waitingTimes = null; // only kept if asked for
+    private CustomerClasses classes = null; // only tallied per class if set
+    private int[] classEntered;
+    private int[] classLeft;
+    private SampleStatistics[] classWaits;
+
+    /**
+     * Starts keeping the waiting time of every Customer, in the order they get
+     * served, for analysing the run as a time series.
+     */
+    void keepWaitingTimes() {
+        this.waitingTimes = new DoubleList();
+    }
+
+    /**
+     * Starts tallying the Customers of every priority class apart as well.
+     *
+     * @param customerClasses the classes of the Customers.
+     */
+    void tallyClasses(CustomerClasses customerClasses) {
+        int n = customerClasses.getNumClasses();
+        this.classes = customerClasses;
+        this.classEntered = new int[n];
+        this.classLeft = new int[n];
+        this.classWaits = new SampleStatistics[n];
+        for (int i = 0; i < n; i++) {
+            this.classWaits[i] = new SampleStatistics();
+        }
+    }
+
+    /**
+     * Records the waiting time of a Customer that starts getting served.
+     *
+     * @param customerClass the priority class of the Customer.
+     * @param waitingTime   how long the Customer waited, 0 if served upon arrival.
+     */
+    void recordWait(int customerClass, double waitingTime) {
+        if (this.waitingTimes != null) {
+            this.waitingTimes.add(waitingTime);
+        }
+        if (this.classes != null) {
+            this.classWaits[customerClass].add(waitingTime);
+        }
+    }
+
+    /**
+     * Records a Customer of a priority class leaving unserved.
+     *
+     * @param customerClass the priority class of the Customer.
+     */
+    void recordLeaving(int customerClass) {
+        if (this.classes != null) {
+            this.classLeft[customerClass]++;
+        }
+    }
+
+    /**
+     * The waiting times of the Customers in the order they got served.
+     *
+     * @return the recorded waiting times, null if they were not kept.
+     */
+    DoubleList getWaitingTimes() {
+        return this.waitingTimes;
+    }
+
+    /**
+     * Gives the next Customer ID of this run.
+     * Side effect:
+     * 1. the customersEntered counter is incremented.
+     *
+     * @param customerClass the priority class of the Customer.
+     * @return the ID of the newly entered Customer.
+     */
+    int nextCustomerID(int customerClass) {
+        if (this.classes != null) {
+            this.classEntered[customerClass]++;
+        }
+        return ++this.customersEntered;
+    }
+
+    public int getCustomersEntered() {
+        return this.customersEntered;
+    }
+
+    public int getCustomersServed() {
+        return this.customersServed;
+    }
+
+    public int getCustomersLeft() {
+        return this.customersLeft;
+    }
+
+    public double getTotalWaitingTime() {
+        return this.totalWaitingTime;
+    }
+
+    /**
+     * Average waiting time over all the Customers that have been served.
+     *
+     * @return the average waiting time, 0 if nobody has been served.
+     */
+    public double getAverageWaitingTime() {
+        return (this.customersServed == 0 || this.totalWaitingTime == 0)
+                   ? 0 : this.totalWaitingTime / this.customersServed;
+    }
+
+    /**
+     * Fraction of the entered Customers that did not get served.
+     *
+     * @return fraction of Customers that left, 0 if nobody has entered.
+     */
+    public double getFractionLeft() {
+        return this.customersEntered == 0
+                   ? 0 : (double) (this.customersEntered - this.customersServed)
+                             / this.customersEntered;
+    }
+
+    /**
+     * The priority classes tallied apart.
+     *
+     * @return the classes, null if the Customers weren't tallied per class.
+     */
+    public CustomerClasses getCustomerClasses() {
+        return this.classes;
+    }
+
+    public int getClassEntered(int customerClass) {
+        return this.classEntered[customerClass];
+    }
+
+    public int getClassLeft(int customerClass) {
+        return this.classLeft[customerClass];
+    }
+
+    /**
+     * The waiting times of the Customers of a priority class that got served.
+     *
+     * @param customerClass the index of the class, 0 being the highest priority.
+     * @return the mean, variance and number of their waiting times.
+     */
+    public SampleStatistics getClassWaits(int customerClass) {
+        return this.classWaits[customerClass];
+    }
+
+    /**
+     * The statistics of every priority class, one line per class in the format
+     * "name [averageWaitingTime customersServed customersNotServed]".
+     *
+     * @return the per-class statistics, empty if they weren't tallied.
+     */
+    public String showClasses() {
+        StringBuilder res = new StringBuilder();
+        for (int i = 0; this.classes != null && i < this.classes.getNumClasses(); i++) {
+            long served = this.classWaits[i].getCount();
+            res.append(i == 0 ? "" : "\n").append(this.classes.getName(i)).append(" [")
+                .append(Customer.prettyPrint(this.classWaits[i].getMean())).append(' ')
+                .append(served).append(' ').append(this.classEntered[i] - served).append(']');
+        }
+        return res.toString();
+    }
+
+    /**
+     * String representation of the statistics being tallied, in the format
+     * printed at the end of the logs.
+     *
+     * @return [averageWaitingTime customersServed customersNotServed]
+     */
+    @Override
+    public String toString() {
+        return "[" + Customer.prettyPrint(getAverageWaitingTime()) + " "
+                   + this.customersServed + " "
+                   + (this.customersEntered - this.customersServed) + "]";
+    }
+}
@@ -0,0 +1,67 @@
+package cs2030.simulator;
+
+/**
+ * SampleStatistics keeps the running mean and variance of a stream of
+ * observations (Welford's method), and gives confidence intervals for the mean.
+ */
+public class SampleStatistics {
+
+    private long count = 0;
+    private double mean = 0;
+    private double sumSquaredDeviations = 0;
+
+    /**
+     * Adds an observation.
+     *
+     * @param x the observed value.
+     */
+    public void add(double x) {
+        this.count++;
+        double delta = x - this.mean;
+        this.mean += delta / this.count;
+        this.sumSquaredDeviations += delta * (x - this.mean);
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+
+    /**
+     * Unbiased sample variance of the observations.
+     *
+     * @return the sample variance, 0 if there are fewer than 2 observations.
+     */
+    public double getVariance() {
+        return this.count < 2 ? 0 : this.sumSquaredDeviations / (this.count - 1);
+    }
+
+    /**
+     * Half-width of the Student t confidence interval for the mean.
+     *
+     * @param confidence the confidence level, e.g. 0.95.
+     * @return the half-width, infinite if there are fewer than 2 observations.
+     */
+    public double halfWidth(double confidence) {
+        if (this.count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double t = Quantiles.studentT(1 - (1 - confidence) / 2, (int) Math.min(
+            this.count - 1, Integer.MAX_VALUE));
+        return t * Math.sqrt(getVariance() / this.count);
+    }
+
+    /**
+     * Whether the confidence interval is narrow enough relative to the mean.
+     *
+     * @param confidence        the confidence level, e.g. 0.95.
+     * @param relativeHalfWidth the largest acceptable half-width / |mean|.
+     * @return true if the target precision has been reached.
+     */
+    public boolean isPrecise(double confidence, double relativeHalfWidth) {
+        return halfWidth(confidence) <= relativeHalfWidth * Math.abs(this.mean);
+    }
+}
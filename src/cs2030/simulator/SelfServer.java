@@ -1,25 +1,23 @@
 package cs2030.simulator;
 
-import java.util.LinkedList;
 import java.util.Queue;
 
 public class SelfServer extends Server {
 
-    protected static Queue<Customer> sharedQueue;
-    private static boolean doneInit = false; // flags the init for the queue
+    static final String NAME_PREFIX = "self-check ";
+
+    protected final Queue<Customer> sharedQueue; // same queue for all selfServers of a run
 
     /**
      * Usual constructor for a server.
      *
-     * @param serverID int representation for the self-server.
-     * @param qmax     the max number of customers that may queue in the shared queue.
+     * @param serverID    int representation for the self-server.
+     * @param qmax        the max number of customers that may queue in the shared queue.
+     * @param sharedQueue the queue shared by all the self-servers of the shop.
      */
-    public SelfServer(int serverID, int qmax) {
+    public SelfServer(int serverID, int qmax, Queue<Customer> sharedQueue) {
         super(serverID, qmax);
-        if (!doneInit) {
-            SelfServer.sharedQueue = new LinkedList<>();
-            SelfServer.doneInit = true;
-        }
+        this.sharedQueue = sharedQueue;
     }
 
     /**
@@ -32,8 +30,9 @@ public class SelfServer extends Server {
      */
     private SelfServer(int serverID, int qmax, boolean isIdle,
                        boolean isResting, double nextAvailableTime,
-                       Queue<Customer> waitingQueue) {
+                       Queue<Customer> waitingQueue, Queue<Customer> sharedQueue) {
         super(serverID, qmax, isIdle, isResting, nextAvailableTime, waitingQueue);
+        this.sharedQueue = sharedQueue;
     }
 
     /**
@@ -45,7 +44,7 @@ public class SelfServer extends Server {
      */
     protected SelfServer updateSelfServer(boolean isIdle, double nextAvailableTime) {
         return new SelfServer(this.serverID,
-            this.qmax, isIdle, false, nextAvailableTime, this.waitingQueue);
+            this.qmax, isIdle, false, nextAvailableTime, this.waitingQueue, this.sharedQueue);
     }
 
     /**
@@ -67,7 +66,7 @@ public class SelfServer extends Server {
      */
     @Override
     protected boolean canQueue(double arrivalTime) {
-        return SelfServer.sharedQueue.size() < this.qmax;
+        return this.sharedQueue.size() < this.qmax;
     }
 
     /**
@@ -79,20 +78,24 @@ public class SelfServer extends Server {
      */
     @Override
     protected SelfServer serveUponArrival() {
-        assert SelfServer.sharedQueue.isEmpty();
+        assert this.sharedQueue.isEmpty();
         return updateSelfServer(false, this.nextAvailableTime);
     }
 
     /**
      * SelfServer adds the customer to the sharedQueue, queue is updated!
-     * Only the sharedQueue class-level attribute will be modified by this.
+     * Only the contents of the sharedQueue will be modified by this, since every
+     * selfServer of the shop holds on to the same sharedQueue.
      *
-     * @param newQueue new queue to replace the old sharedQueue.
+     * @param newQueue new queue to replace the contents of the old sharedQueue.
      * @return a new instance of Server with an updated queue.
      */
     @Override
     protected SelfServer addToWaitQueue(Queue<Customer> newQueue) {
-        SelfServer.sharedQueue = newQueue; // update sharedQueue to the newQueue
+        if (newQueue != this.sharedQueue) { // update sharedQueue to the newQueue
+            this.sharedQueue.clear();
+            this.sharedQueue.addAll(newQueue);
+        }
         return this;
     }
 
@@ -105,14 +108,15 @@ public class SelfServer extends Server {
      * 2. else no change to the queue
      *
      * @param presentTime time when the customer will be done.
+     * @param wasWaiting  whether the customer was waiting in the queue.
      * @return a new instance of Server with an updated state.
      */
     @Override
-    protected SelfServer actuallyServeCustomer(double presentTime) {
+    protected SelfServer actuallyServeCustomer(double presentTime, boolean wasWaiting) {
         assert !this.isIdle;
         // if customer was waiting in the sharedqueue:
-        if (!SelfServer.sharedQueue.isEmpty()) {
-            SelfServer.sharedQueue.remove();
+        if (wasWaiting) {
+            this.sharedQueue.remove();
         }
         return updateSelfServer(false, presentTime);
     }
@@ -126,11 +130,11 @@ public class SelfServer extends Server {
 
     @Override
     protected int getQueueSize() {
-        return SelfServer.sharedQueue.size();
+        return this.sharedQueue.size();
     }
 
     @Override
     public String toString() {
-        return "self-check " + this.serverID;
+        return NAME_PREFIX + this.serverID;
     }
 }
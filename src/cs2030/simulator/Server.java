@@ -1,6 +1,5 @@
 package cs2030.simulator;
 
-import java.util.LinkedList;
 import java.util.Queue;
 
 /**
@@ -11,6 +10,8 @@ import java.util.Queue;
  */
 public class Server {
 
+    static final String NAME_PREFIX = "server ";
+
     protected final int serverID;
     protected final boolean isIdle;
     protected final double nextAvailableTime;
@@ -24,11 +25,21 @@ public class Server {
      * @param serverID the unique ID that a server shall have.
      */
     protected Server(int serverID, int qmax) {
+        this(serverID, qmax, 1);
+    }
+
+    /**
+     * Constructor for a server with an empty queue served by priority class.
+     *
+     * @param serverID   the unique ID that a server shall have.
+     * @param numClasses the number of priority classes of the Customers.
+     */
+    protected Server(int serverID, int qmax, int numClasses) {
         this.serverID = serverID;
         this.qmax = qmax;
         this.isIdle = true;
         this.nextAvailableTime = 0; // start availability will be at 0
-        this.waitingQueue = new LinkedList<>();
+        this.waitingQueue = new BucketQueue(numClasses);
         this.isResting = false;
     }
 
@@ -105,21 +116,19 @@ public class Server {
      * Might change queue:
      * 1. if doneCustomer was initially waiting in queue, then free up queue space
      * 2. else no change to the queue
+     * The queue is updated in place, since older states of the Server are not used.
      *
      * @param presentTime time when the customer will be done.
+     * @param wasWaiting  whether the customer was waiting in the queue.
      * @return a new instance of Server with an updated state.
      */
-    protected Server actuallyServeCustomer(double presentTime) {
+    protected Server actuallyServeCustomer(double presentTime, boolean wasWaiting) {
         assert !this.isIdle;
-        if (this.waitingQueue.isEmpty()) { // means the doneCustomer wasn't waiting
-            return new Server(this.serverID, this.qmax, false, false,
-                presentTime, this.waitingQueue);
-        } else { // doneCustomer was waiting, we modify the queue as well
-            Queue<Customer> newQueue = new LinkedList<>(this.waitingQueue);
-            newQueue.remove();
-            return new Server(this.serverID, this.qmax,
-                false, false, presentTime, newQueue);
+        if (wasWaiting) { // doneCustomer was waiting, free up the queue
+            this.waitingQueue.remove();
         }
+        return new Server(this.serverID, this.qmax, false, false,
+            presentTime, this.waitingQueue);
     }
 
     /**
@@ -156,7 +165,7 @@ public class Server {
      * @return Server that might potentially stop resting.
      */
     protected Server stopResting(double now) {
-        if (now >= this.nextAvailableTime) {
+        if (this.isResting && now >= this.nextAvailableTime) {
             return new Server(this.serverID, this.qmax, this.isIdle, false,
                 this.nextAvailableTime, this.waitingQueue);
         } else return this;
@@ -169,6 +178,6 @@ public class Server {
 
     @Override
     public String toString() {
-        return "server " + this.serverID;
+        return NAME_PREFIX + this.serverID;
     }
 }
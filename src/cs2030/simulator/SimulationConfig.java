@@ -0,0 +1,287 @@
+package cs2030.simulator;
+
+import java.util.Scanner;
+
+/**
+ * A SimulationConfig holds the inputs that a Manager is constructed with, so that
+ * the same shop can be simulated many times, for example with different seeds.
+ * It is immutable, hence can be shared between concurrent runs.
+ */
+public class SimulationConfig {
+
+    private final int seed;
+    private final int numServers;
+    private final int numSelfServers;
+    private final int qmax;
+    private final int numArrivalEvents;
+    private final double lambda;
+    private final double mu;
+    private final double rho;
+    private final double pRest;
+    private final double pGreedy;
+    private final Distribution interArrivalTimes;
+    private final Distribution serviceTimes;
+    private final RateProfile arrivalRates; // null for a constant arrival rate
+    private final CustomerClasses customerClasses; // null for a single class
+    private final GroupSizes groupSizes; // null for Customers arriving alone
+
+    /**
+     * Constructs a configuration out of the usual Manager inputs.
+     *
+     * @param seed             the seed for the random generator.
+     * @param numServers       the number of human servers.
+     * @param numSelfServers   the number of self-checkout servers.
+     * @param qmax             the max number of customers that can queue here.
+     * @param numArrivalEvents the number of customers that will be arriving.
+     * @param lambda           arrival rate of customers.
+     * @param mu               service rate of Servers.
+     * @param rho              resting rate of Human servers.
+     * @param pRest            probability for resting.
+     * @param pGreedy          probability for it being a greedy customer.
+     */
+    public SimulationConfig(int seed, int numServers, int numSelfServers, int qmax,
+                            int numArrivalEvents, double lambda, double mu, double rho,
+                            double pRest, double pGreedy) {
+        this(seed, numServers, numSelfServers, qmax, numArrivalEvents, lambda, mu, rho,
+            pRest, pGreedy, new ExponentialDistribution(lambda),
+            new ExponentialDistribution(mu), null, null, null);
+    }
+
+    private SimulationConfig(int seed, int numServers, int numSelfServers, int qmax,
+                             int numArrivalEvents, double lambda, double mu, double rho,
+                             double pRest, double pGreedy, Distribution interArrivalTimes,
+                             Distribution serviceTimes, RateProfile arrivalRates,
+                             CustomerClasses customerClasses, GroupSizes groupSizes) {
+        this.seed = seed;
+        this.numServers = numServers;
+        this.numSelfServers = numSelfServers;
+        this.qmax = qmax;
+        this.numArrivalEvents = numArrivalEvents;
+        this.lambda = lambda;
+        this.mu = mu;
+        this.rho = rho;
+        this.pRest = pRest;
+        this.pGreedy = pGreedy;
+        this.interArrivalTimes = interArrivalTimes;
+        this.serviceTimes = serviceTimes;
+        this.arrivalRates = arrivalRates;
+        this.customerClasses = customerClasses;
+        this.groupSizes = groupSizes;
+    }
+
+    /**
+     * Reads a configuration in the usual input format: seed, numServers,
+     * numSelfServers, qmax, numArrivalEvents, lambda, mu, rho, pRest, pGreedy.
+     *
+     * @param sc the scanner to read the ten inputs from.
+     * @return the configuration read.
+     */
+    public static SimulationConfig read(Scanner sc) {
+        return new SimulationConfig(sc.nextInt(), sc.nextInt(), sc.nextInt(),
+            sc.nextInt(), sc.nextInt(), sc.nextDouble(), sc.nextDouble(),
+            sc.nextDouble(), sc.nextDouble(), sc.nextDouble());
+    }
+
+    /**
+     * The same configuration, to be run with another seed.
+     *
+     * @param newSeed the seed for the random generator.
+     * @return a configuration that differs only in its seed.
+     */
+    public SimulationConfig withSeed(int newSeed) {
+        return new SimulationConfig(newSeed, this.numServers, this.numSelfServers,
+            this.qmax, this.numArrivalEvents, this.lambda, this.mu, this.rho,
+            this.pRest, this.pGreedy, this.interArrivalTimes, this.serviceTimes,
+            this.arrivalRates, this.customerClasses, this.groupSizes);
+    }
+
+    /**
+     * The same configuration, with another number of Customers arriving.
+     *
+     * @param newNumArrivalEvents the number of customers that will be arriving.
+     * @return a configuration that differs only in its number of arrivals.
+     */
+    public SimulationConfig withNumArrivalEvents(int newNumArrivalEvents) {
+        return new SimulationConfig(this.seed, this.numServers, this.numSelfServers,
+            this.qmax, newNumArrivalEvents, this.lambda, this.mu, this.rho,
+            this.pRest, this.pGreedy, this.interArrivalTimes, this.serviceTimes,
+            this.arrivalRates, this.customerClasses, this.groupSizes);
+    }
+
+    /**
+     * The same configuration, with inter-arrival and service times drawn from
+     * other distributions than the exponential ones. lambda and mu become the
+     * inverses of their means, unless the arrival rate varies.
+     *
+     * @param newInterArrivalTimes the distribution of the inter-arrival times.
+     * @param newServiceTimes      the distribution of the service times.
+     * @return a configuration that differs only in its distributions.
+     */
+    public SimulationConfig withDistributions(Distribution newInterArrivalTimes,
+                                              Distribution newServiceTimes) {
+        return new SimulationConfig(this.seed, this.numServers, this.numSelfServers,
+            this.qmax, this.numArrivalEvents,
+            this.arrivalRates == null ? 1 / newInterArrivalTimes.getMean() : this.lambda,
+            1 / newServiceTimes.getMean(), this.rho, this.pRest, this.pGreedy,
+            newInterArrivalTimes, newServiceTimes, this.arrivalRates, this.customerClasses,
+            this.groupSizes);
+    }
+
+    /**
+     * The same configuration, with Customers arriving as a non-homogeneous Poisson
+     * process whose rate varies over the day, instead of at inter-arrival times
+     * drawn from a distribution. lambda becomes the mean rate of the profile.
+     *
+     * @param profile the arrival rate over the day.
+     * @return a configuration that differs only in its arrivals.
+     */
+    public SimulationConfig withArrivalRates(RateProfile profile) {
+        return new SimulationConfig(this.seed, this.numServers, this.numSelfServers,
+            this.qmax, this.numArrivalEvents, profile.getMeanRate(), this.mu, this.rho,
+            this.pRest, this.pGreedy, this.interArrivalTimes, this.serviceTimes, profile,
+            this.customerClasses, this.groupSizes);
+    }
+
+    /**
+     * The same configuration, with the Customers split into priority classes.
+     *
+     * @param classes the classes, with their shares of the arrivals.
+     * @return a configuration that differs only in its classes.
+     */
+    public SimulationConfig withCustomerClasses(CustomerClasses classes) {
+        return new SimulationConfig(this.seed, this.numServers, this.numSelfServers,
+            this.qmax, this.numArrivalEvents, this.lambda, this.mu, this.rho,
+            this.pRest, this.pGreedy, this.interArrivalTimes, this.serviceTimes,
+            this.arrivalRates, classes, this.groupSizes);
+    }
+
+    /**
+     * The same configuration, with Customers arriving in groups: the groups
+     * arrive at the inter-arrival times, or at the arrival rate, and
+     * numArrivalEvents still counts Customers, the last group being cut short.
+     *
+     * @param sizes the distribution of the sizes of the groups.
+     * @return a configuration that differs only in how Customers arrive.
+     */
+    public SimulationConfig withGroupSizes(GroupSizes sizes) {
+        return new SimulationConfig(this.seed, this.numServers, this.numSelfServers,
+            this.qmax, this.numArrivalEvents, this.lambda, this.mu, this.rho,
+            this.pRest, this.pGreedy, this.interArrivalTimes, this.serviceTimes,
+            this.arrivalRates, this.customerClasses, sizes);
+    }
+
+    /**
+     * Whether the inter-arrival and service times are exponential at constant
+     * rates, Customers arrive one at a time and everyone is served first come
+     * first served, as assumed by the analytic models, the Markov chains and the
+     * lock-step engine.
+     *
+     * @return true if both distributions are exponential, the arrival rate
+     *     doesn't vary and there are no groups nor priority classes.
+     */
+    public boolean isMarkovian() {
+        return this.arrivalRates == null && this.customerClasses == null
+                   && this.groupSizes == null
+                   && this.interArrivalTimes instanceof ExponentialDistribution
+                   && this.serviceTimes instanceof ExponentialDistribution;
+    }
+
+    /**
+     * The same configuration, seeded for the given replication the way the
+     * ReplicationController seeds its replications.
+     *
+     * @param replication the index of the replication, 0 keeps the seed.
+     * @return a configuration that differs only in its seed.
+     */
+    public SimulationConfig forReplication(int replication) {
+        return withSeed(this.seed + replication * ReplicationController.SEED_STRIDE);
+    }
+
+    /*                          GETTERS:                                 */
+    public int getSeed() {
+        return this.seed;
+    }
+
+    public int getNumServers() {
+        return this.numServers;
+    }
+
+    public int getNumSelfServers() {
+        return this.numSelfServers;
+    }
+
+    public int getQmax() {
+        return this.qmax;
+    }
+
+    public int getNumArrivalEvents() {
+        return this.numArrivalEvents;
+    }
+
+    public double getLambda() {
+        return this.lambda;
+    }
+
+    public double getMu() {
+        return this.mu;
+    }
+
+    public double getRho() {
+        return this.rho;
+    }
+
+    public double getPRest() {
+        return this.pRest;
+    }
+
+    public double getPGreedy() {
+        return this.pGreedy;
+    }
+
+    public Distribution getInterArrivalTimes() {
+        return this.interArrivalTimes;
+    }
+
+    public Distribution getServiceTimes() {
+        return this.serviceTimes;
+    }
+
+    /**
+     * The arrival rate over the day.
+     *
+     * @return the rate profile, null if the arrival rate is constant.
+     */
+    public RateProfile getArrivalRates() {
+        return this.arrivalRates;
+    }
+
+    /**
+     * The priority classes of the Customers.
+     *
+     * @return the classes, null if everyone is served first come first served.
+     */
+    public CustomerClasses getCustomerClasses() {
+        return this.customerClasses;
+    }
+
+    /**
+     * The distribution of the sizes of the groups Customers arrive in.
+     *
+     * @return the group sizes, null if Customers arrive one at a time.
+     */
+    public GroupSizes getGroupSizes() {
+        return this.groupSizes;
+    }
+
+    /**
+     * String representation in the same format that is read in.
+     *
+     * @return the ten inputs separated by spaces.
+     */
+    @Override
+    public String toString() {
+        return this.seed + " " + this.numServers + " " + this.numSelfServers + " "
+                   + this.qmax + " " + this.numArrivalEvents + " " + this.lambda + " "
+                   + this.mu + " " + this.rho + " " + this.pRest + " " + this.pGreedy;
+    }
+}
@@ -0,0 +1,455 @@
+package cs2030.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A SimulationService keeps one JVM running to simulate shops on request over
+ * HTTP on the loopback interface, so that the runs are spared the startup and
+ * warm-up of a JVM each. Every request is handled on a thread of its own,
+ * virtual if the JVM has them, and every run on a Manager of its own.
+ * "POST /run" simulates the shop in the body, either the ten usual inputs or a
+ * flat JSON object with the same names as SimulationConfig's getters, e.g.
+ * {"seed": 1, "lambda": 1.5}, the inputs it leaves out taken from the defaults,
+ * and with the options "arrivals", "service", "rates", "classes" and "groups" as
+ * strings, as on the command line of Main. The options may also be given as
+ * query parameters, which the JSON overrides. The answer, headed by the
+ * Run-Id of the run, is the statistics of the day, or with "?output=logs" its
+ * logs streamed as the day goes on followed by the statistics, and ends with
+ * "cancelled" if the run was.
+ * "POST /cancel?id=N" stops run N after at most Manager.CANCEL_CHECK_EVENTS more
+ * events, and "GET /runs" lists the runs going on.
+ * At most maxRuns runs go on at once, by default one per core; a run asked for
+ * beyond that is turned away with 503 rather than queued. A shop that can't be
+ * run, e.g. with a negative number of servers, a probability outside [0, 1] or
+ * a rate profile whose rates are all 0, is turned away with 400 before it is
+ * admitted, as is a shop of more than MAX_SERVERS servers or room for more than
+ * MAX_IN_SHOP Customers at once, and the option "empirical:file", so that
+ * requests can't read the files of the server.
+ */
+public class SimulationService {
+
+    private static final String[] INPUTS = {"seed", "numServers", "numSelfServers", "qmax",
+        "numArrivalEvents", "lambda", "mu", "rho", "pRest", "pGreedy"};
+    static final int MAX_SERVERS = 10_000; // human and self-checkout together
+    static final long MAX_IN_SHOP = 1_000_000; // customers served or queueing at once
+
+    private final SimulationConfig defaults;
+    private final Semaphore admissions;
+    private final Map<Long, AtomicBoolean> runs = new ConcurrentHashMap<>();
+    private final AtomicLong lastRunID = new AtomicLong();
+    private final ExecutorService executor = newRequestExecutor();
+    private HttpServer server = null;
+
+    /**
+     * Constructs a service admitting a run per core.
+     *
+     * @param defaults the inputs of a run that its request leaves out.
+     */
+    public SimulationService(SimulationConfig defaults) {
+        this(defaults, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a service.
+     *
+     * @param defaults the inputs of a run that its request leaves out.
+     * @param maxRuns  the most runs to go on at once.
+     */
+    public SimulationService(SimulationConfig defaults, int maxRuns) {
+        assert maxRuns > 0;
+        this.defaults = defaults;
+        this.admissions = new Semaphore(maxRuns);
+    }
+
+    /**
+     * A virtual thread per request if the JVM has them, looked up by reflection
+     * so that older JVMs still run the service, else a growing pool of threads.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                                         .getMethod("newVirtualThreadPerTaskExecutor")
+                                         .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "simulation-request");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Starts serving requests on a port of the loopback interface.
+     *
+     * @param port the port, 0 for any free one.
+     * @return the port served on.
+     * @throws IOException if the port can't be bound.
+     */
+    public int start(int port) throws IOException {
+        this.server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/run", this::run);
+        this.server.createContext("/cancel", this::cancel);
+        this.server.createContext("/runs", this::listRuns);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving, cancelling the runs going on.
+     */
+    public void stop() {
+        this.runs.values().forEach(cancelled -> cancelled.set(true));
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    private void run(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "error POST a shop to run\n");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            SimulationConfig config;
+            try {
+                String body = new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8);
+                config = parseConfig(body, query);
+            } catch (IllegalArgumentException e) { // only ever with a message of our own
+                reply(exchange, 400, "error " + e.getMessage() + "\n");
+                return;
+            } catch (RuntimeException e) {
+                reply(exchange, 400, "error bad request\n");
+                return;
+            }
+            if (!this.admissions.tryAcquire()) {
+                reply(exchange, 503, "error busy, try again later\n");
+                return;
+            }
+            long id = this.lastRunID.incrementAndGet();
+            AtomicBoolean cancelled = new AtomicBoolean();
+            this.runs.put(id, cancelled);
+            try {
+                simulate(exchange, id, config, "logs".equals(query.get("output")), cancelled);
+            } finally {
+                this.runs.remove(id);
+                this.admissions.release();
+            }
+        }
+    }
+
+    /**
+     * Simulates the day, streaming the answer out as it goes.
+     */
+    private void simulate(HttpExchange exchange, long id, SimulationConfig config,
+                          boolean withLogs, AtomicBoolean cancelled) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+        exchange.getResponseHeaders().set("Run-Id", Long.toString(id));
+        exchange.sendResponseHeaders(200, 0); // chunked, as long as the day takes
+        OutputStream out = exchange.getResponseBody();
+        Manager manager = new Manager(config, withLogs);
+        if (withLogs) {
+            manager.streamLogsTo(out);
+        }
+        boolean finished;
+        try {
+            finished = manager.operateUnless(cancelled::get);
+        } catch (UncheckedIOException e) { // the client went away
+            return;
+        } catch (RuntimeException e) { // the headers are sent, so say so in the body
+            out.write("error the run failed\n".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        StringBuilder answer = new StringBuilder().append(manager.getStatistics()).append('\n');
+        if (config.getCustomerClasses() != null) {
+            answer.append(manager.getStatistics().showClasses()).append('\n');
+        }
+        if (!finished) {
+            answer.append("cancelled\n");
+        }
+        out.write(answer.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void cancel(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String id = parseQuery(exchange.getRequestURI().getRawQuery()).get("id");
+            AtomicBoolean cancelled;
+            try {
+                cancelled = id == null ? null : this.runs.get(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                cancelled = null;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "error POST the run to cancel\n");
+            } else if (cancelled == null) {
+                reply(exchange, 404, "error no run " + id + "\n");
+            } else {
+                cancelled.set(true);
+                reply(exchange, 200, "cancelling " + id + "\n");
+            }
+        }
+    }
+
+    private void listRuns(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            StringBuilder ids = new StringBuilder();
+            this.runs.keySet().stream().sorted().forEach(id -> ids.append(id).append('\n'));
+            reply(exchange, 200, ids.toString());
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String text)
+        throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    /**
+     * Reads the shop of a request, in the usual input format or as JSON, with the
+     * options of its query parameters and JSON applied.
+     *
+     * @param body  the body of the request.
+     * @param query the query parameters of the request.
+     * @return the shop to simulate.
+     * @throws IllegalArgumentException if the shop can't be read.
+     */
+    SimulationConfig parseConfig(String body, Map<String, String> query) {
+        Map<String, String> options = new HashMap<>(query);
+        String inputs;
+        if (body.isBlank() || body.trim().startsWith("{")) {
+            Map<String, String> json = body.isBlank() ? Map.of() : parseJson(body);
+            options.putAll(json);
+            String[] defaultInputs = {Integer.toString(this.defaults.getSeed()),
+                Integer.toString(this.defaults.getNumServers()),
+                Integer.toString(this.defaults.getNumSelfServers()),
+                Integer.toString(this.defaults.getQmax()),
+                Integer.toString(this.defaults.getNumArrivalEvents()),
+                Double.toString(this.defaults.getLambda()),
+                Double.toString(this.defaults.getMu()),
+                Double.toString(this.defaults.getRho()),
+                Double.toString(this.defaults.getPRest()),
+                Double.toString(this.defaults.getPGreedy())};
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < INPUTS.length; i++) {
+                joined.append(json.getOrDefault(INPUTS[i], defaultInputs[i])).append(' ');
+            }
+            inputs = joined.toString();
+        } else {
+            inputs = body;
+        }
+        SimulationConfig config;
+        try {
+            config = SimulationConfig.read(new Scanner(inputs));
+        } catch (RuntimeException e) { // mismatched or missing inputs
+            throw new IllegalArgumentException("cannot read the ten inputs");
+        }
+        validate(config);
+        return withOptions(config, options);
+    }
+
+    /**
+     * Checks that the ten inputs make a shop that can be run.
+     *
+     * @throws IllegalArgumentException if they don't.
+     */
+    private static void validate(SimulationConfig config) {
+        if (config.getNumServers() < 0 || config.getNumSelfServers() < 0) {
+            throw new IllegalArgumentException("numbers of servers must not be negative");
+        }
+        if (config.getQmax() < 0 || config.getNumArrivalEvents() < 0) {
+            throw new IllegalArgumentException("qmax and numArrivalEvents must not be negative");
+        }
+        long numServers = (long) config.getNumServers() + config.getNumSelfServers();
+        if (numServers > MAX_SERVERS) {
+            throw new IllegalArgumentException("at most " + MAX_SERVERS + " servers");
+        }
+        long inShop = config.getNumServers() * (config.getQmax() + 1L)
+                          + config.getNumSelfServers() + config.getQmax();
+        if (inShop > MAX_IN_SHOP) {
+            throw new IllegalArgumentException(
+                "room for at most " + MAX_IN_SHOP + " customers at once");
+        }
+        if (!isRate(config.getLambda()) || !isRate(config.getMu())
+                || !isRate(config.getRho())) {
+            throw new IllegalArgumentException("rates must be positive and finite");
+        }
+        if (!isProbability(config.getPRest()) || !isProbability(config.getPGreedy())) {
+            throw new IllegalArgumentException("pRest and pGreedy must be between 0 and 1");
+        }
+    }
+
+    private static boolean isRate(double x) {
+        return x > 0 && x < Double.POSITIVE_INFINITY;
+    }
+
+    private static boolean isProbability(double p) {
+        return p >= 0 && p <= 1; // false for NaN
+    }
+
+    /**
+     * Applies the options as Main applies those on its command line, except that
+     * empirical distributions, which read a file of the server's, are refused.
+     * An option that can't be read is reported by name only, so that nothing of
+     * what reading it touched is sent back.
+     *
+     * @throws IllegalArgumentException if an option can't be read or is refused.
+     */
+    private static SimulationConfig withOptions(SimulationConfig config,
+                                                Map<String, String> options) {
+        String option = null;
+        try {
+            if (options.containsKey(option = "groups")) {
+                config = config.withGroupSizes(GroupSizes.parse(options.get(option)));
+            }
+            if (options.containsKey(option = "classes")) {
+                config = config.withCustomerClasses(CustomerClasses.parse(options.get(option)));
+            }
+            if (options.containsKey(option = "rates")) {
+                config = config.withArrivalRates(RateProfile.parse(options.get(option)));
+            }
+            Distribution interArrivalTimes = config.getInterArrivalTimes();
+            Distribution serviceTimes = config.getServiceTimes();
+            if (options.containsKey(option = "arrivals")) {
+                interArrivalTimes = parseDistribution(options.get(option));
+            }
+            if (options.containsKey(option = "service")) {
+                serviceTimes = parseDistribution(options.get(option));
+            }
+            return interArrivalTimes == config.getInterArrivalTimes()
+                       && serviceTimes == config.getServiceTimes()
+                       ? config : config.withDistributions(interArrivalTimes, serviceTimes);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("cannot read the " + option + " option");
+        }
+    }
+
+    private static Distribution parseDistribution(String spec) {
+        if (spec.trim().toLowerCase().startsWith("empirical")) {
+            throw new IllegalArgumentException("empirical distributions are refused");
+        }
+        return Distribution.parse(spec);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Reads a flat JSON object whose values are numbers, strings or booleans.
+     *
+     * @param json the object.
+     * @return the values by name, numbers and booleans as written.
+     * @throws IllegalArgumentException if it isn't such an object.
+     */
+    static Map<String, String> parseJson(String json) {
+        Map<String, String> values = new HashMap<>();
+        int[] at = {skipSpaces(json, 0)};
+        expect(json, at, '{');
+        if (peek(json, at) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String name = readString(json, at);
+                expect(json, at, ':');
+                String value = peek(json, at) == '"' ? readString(json, at) : readBare(json, at);
+                values.put(name, value);
+                if (peek(json, at) == ',') {
+                    at[0]++;
+                    continue;
+                }
+                expect(json, at, '}');
+                break;
+            }
+        }
+        if (skipSpaces(json, at[0]) != json.length()) {
+            throw new IllegalArgumentException("trailing characters in JSON");
+        }
+        return values;
+    }
+
+    private static int skipSpaces(String json, int at) {
+        while (at < json.length() && Character.isWhitespace(json.charAt(at))) {
+            at++;
+        }
+        return at;
+    }
+
+    private static char peek(String json, int[] at) {
+        at[0] = skipSpaces(json, at[0]);
+        if (at[0] >= json.length()) {
+            throw new IllegalArgumentException("unexpected end of JSON");
+        }
+        return json.charAt(at[0]);
+    }
+
+    private static void expect(String json, int[] at, char c) {
+        if (peek(json, at) != c) {
+            throw new IllegalArgumentException("expected '" + c + "' at " + at[0] + " of JSON");
+        }
+        at[0]++;
+    }
+
+    private static String readString(String json, int[] at) {
+        expect(json, at, '"');
+        StringBuilder s = new StringBuilder();
+        while (at[0] < json.length() && json.charAt(at[0]) != '"') {
+            char c = json.charAt(at[0]++);
+            if (c == '\\' && at[0] < json.length()) {
+                c = json.charAt(at[0]++);
+            }
+            s.append(c);
+        }
+        expect(json, at, '"');
+        return s.toString();
+    }
+
+    private static String readBare(String json, int[] at) {
+        int start = skipSpaces(json, at[0]);
+        int end = start;
+        while (end < json.length() && ",}".indexOf(json.charAt(end)) < 0
+                   && !Character.isWhitespace(json.charAt(end))) {
+            end++;
+        }
+        if (end == start) {
+            throw new IllegalArgumentException("expected a value at " + start + " of JSON");
+        }
+        at[0] = end;
+        return json.substring(start, end);
+    }
+}
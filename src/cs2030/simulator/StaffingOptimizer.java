@@ -0,0 +1,281 @@
+package cs2030.simulator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A StaffingOptimizer finds the cheapest of several candidate shops whose Metrics,
+ * e.g. the average wait and the fraction of Customers who leave, are all expected
+ * to stay under their bounds. The candidates are taken in order of cost, and each
+ * is replicated until a sequential feasibility check (the triangular continuation
+ * region of Andradottir and Kim's procedure) decides on every constraint whether
+ * its expected Metric is under the bound: a constraint is met once the running
+ * sum of (Metric - bound) drops below -R(r) and violated once it climbs above
+ * R(r), where R(r) = max(0, h^2 S^2 / (2 epsilon) - epsilon r / 2) narrows with
+ * every replication r, S^2 is the variance over the first replications and
+ * epsilon is the tolerance of the constraint, within which either decision is
+ * acceptable. A candidate is infeasible as soon as one constraint is violated,
+ * and feasible once all of them are met.
+ * Clearly infeasible candidates are thus dropped after few replications, and as
+ * soon as a candidate is feasible every costlier candidate is dropped. Only the
+ * cheapest few undecided candidates, one per core, are replicated at a time, so
+ * costlier candidates are mostly dropped unrun and the replications go to the
+ * cheap candidates that are close to the bound. With
+ * probability at least 1 - alpha every decision made is correct, counting
+ * Metrics within epsilon of their bound as correct either way.
+ * Replication r of every candidate uses the same seeds (common random numbers),
+ * and the replications of a round are run in parallel.
+ */
+public class StaffingOptimizer {
+
+    static final int FIRST_STAGE = 10; // replications before the variance is trusted
+
+    /**
+     * The outcome of checking a candidate.
+     */
+    public enum Decision {
+        FEASIBLE, INFEASIBLE, COSTLIER, UNDECIDED
+    }
+
+    private final List<Candidate> candidates; // in order of cost
+    private final Metric[] metrics; // of the constraints
+    private final double[] bounds;
+    private final double[] tolerances;
+    private final double hSquared;
+    private final int maxReplications;
+    private int replicationsRun = 0; // including those past a decision in the same round
+
+    /**
+     * Constructs an optimizer over the given candidates, with a single constraint.
+     *
+     * @param candidates      the shops to choose from, each with the seed to replicate.
+     * @param cost            the cost of staffing a shop.
+     * @param metric          the Metric to be kept under the bound.
+     * @param bound           the largest acceptable expected value of the Metric.
+     * @param tolerance       epsilon, how far from the bound either decision is fine.
+     * @param alpha           the chance of making any wrong decision, e.g. 0.05.
+     * @param maxReplications the budget of replications per candidate.
+     */
+    public StaffingOptimizer(List<SimulationConfig> candidates,
+                             ToDoubleFunction<SimulationConfig> cost, Metric metric,
+                             double bound, double tolerance, double alpha,
+                             int maxReplications) {
+        this(candidates, cost, new Metric[] {metric}, new double[] {bound},
+            new double[] {tolerance}, alpha, maxReplications);
+    }
+
+    /**
+     * Constructs an optimizer over the given candidates, with a constraint per
+     * Metric, e.g. on the average wait and on the fraction of Customers who leave,
+     * so that shops turning Customers away to keep the wait down aren't picked.
+     *
+     * @param candidates      the shops to choose from, each with the seed to replicate.
+     * @param cost            the cost of staffing a shop.
+     * @param metrics         the Metrics to be kept under their bounds.
+     * @param bounds          the largest acceptable expected value of each Metric.
+     * @param tolerances      epsilon of each Metric, how far from its bound either
+     *                        decision is fine.
+     * @param alpha           the chance of making any wrong decision, e.g. 0.05.
+     * @param maxReplications the budget of replications per candidate.
+     */
+    public StaffingOptimizer(List<SimulationConfig> candidates,
+                             ToDoubleFunction<SimulationConfig> cost, Metric[] metrics,
+                             double[] bounds, double[] tolerances, double alpha,
+                             int maxReplications) {
+        assert (metrics.length > 0 && bounds.length == metrics.length
+                    && tolerances.length == metrics.length);
+        assert (alpha > 0 && alpha < 1 && maxReplications >= FIRST_STAGE);
+        this.candidates = new ArrayList<>();
+        for (SimulationConfig c : candidates) {
+            this.candidates.add(new Candidate(c, cost.applyAsDouble(c), metrics.length));
+        }
+        this.candidates.sort(Comparator.comparingDouble(c -> c.cost)); // stable on ties
+        this.metrics = metrics.clone();
+        this.bounds = bounds.clone();
+        this.tolerances = tolerances.clone();
+        for (double tolerance : tolerances) {
+            assert tolerance > 0;
+        }
+        this.maxReplications = maxReplications;
+        // Bonferroni over the candidates and constraints, eta as in Andradottir
+        // and Kim (2010):
+        double beta = alpha / (candidates.size() * metrics.length);
+        double eta = 0.5 * (Math.pow(2 * beta, -2.0 / (FIRST_STAGE - 1)) - 1);
+        this.hSquared = 2 * eta * (FIRST_STAGE - 1);
+    }
+
+    /**
+     * The default cost of staffing a shop: a human server costs 1 and a
+     * self-checkout server half that. Places in the queues cost nothing, so that
+     * shorter queues, which turn more Customers away, aren't favoured; among shops
+     * of the same cost the candidate given first is preferred.
+     *
+     * @param config the shop.
+     * @return the cost of the shop.
+     */
+    public static double staffingCost(SimulationConfig config) {
+        return config.getNumServers() + 0.5 * config.getNumSelfServers();
+    }
+
+    /**
+     * Replicates the candidates in rounds until each has been decided on or
+     * dropped.
+     *
+     * @return the cheapest feasible candidate along with the decisions made.
+     */
+    public StaffingReport run() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(cores);
+        try {
+            List<Candidate> active = activeCandidates(cores);
+            while (!active.isEmpty()) {
+                int batch = Math.max(1, cores / active.size());
+                List<Callable<RunStatistics>> tasks = new ArrayList<>();
+                List<Integer> counts = new ArrayList<>();
+                for (Candidate c : active) {
+                    int count = c.replications < FIRST_STAGE ? FIRST_STAGE - c.replications
+                                    : Math.min(batch, this.maxReplications - c.replications);
+                    for (int i = 0; i < count; i++) {
+                        int replication = c.replications + i;
+                        tasks.add(() -> ReplicationController.replicate(c.config, replication));
+                    }
+                    counts.add(count);
+                }
+                List<Future<RunStatistics>> results = pool.invokeAll(tasks);
+                this.replicationsRun += tasks.size();
+                int next = 0;
+                for (int a = 0; a < active.size(); a++) {
+                    for (int i = 0; i < counts.get(a); i++) {
+                        observe(active.get(a), results.get(next++).get());
+                    }
+                }
+                active = activeCandidates(cores);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("staffing optimizer was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a replication failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return report();
+    }
+
+    /**
+     * The candidates to replicate next: the cheapest few that are undecided and not
+     * costlier than the cheapest feasible one, few enough that costlier candidates
+     * are not run in vain. Costlier ones are dropped on the way.
+     */
+    private List<Candidate> activeCandidates(int window) {
+        List<Candidate> active = new ArrayList<>();
+        boolean feasibleFound = false;
+        for (Candidate c : this.candidates) {
+            if (feasibleFound && c.decision == null) {
+                c.decision = Decision.COSTLIER;
+            } else if (c.decision == Decision.FEASIBLE) {
+                feasibleFound = true;
+            } else if (c.decision == null && active.size() < window) {
+                if (c.replications >= this.maxReplications) {
+                    c.decision = Decision.UNDECIDED;
+                } else {
+                    active.add(c);
+                }
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Adds the Metrics of the next replication of a candidate, and decides on each
+     * constraint still open whose sum leaves the continuation region, then on the
+     * candidate: infeasible if a constraint is violated, feasible if all are met.
+     */
+    private void observe(Candidate c, RunStatistics stats) {
+        if (c.decision != null) {
+            return; // already decided within this round
+        }
+        c.replications++;
+        boolean allMet = true;
+        for (int m = 0; m < this.metrics.length; m++) {
+            double value = this.metrics[m].of(stats);
+            c.values[m].add(value);
+            if (c.met[m] != null) {
+                continue; // decided on earlier
+            }
+            c.sums[m] += value - this.bounds[m];
+            if (c.replications < FIRST_STAGE) {
+                allMet = false;
+                continue;
+            }
+            if (c.replications == FIRST_STAGE) {
+                c.firstStageVariances[m] = c.values[m].getVariance();
+            }
+            double r = Math.max(0, this.hSquared * c.firstStageVariances[m]
+                                       / (2 * this.tolerances[m])
+                                       - this.tolerances[m] * c.replications / 2);
+            if (c.sums[m] <= -r) {
+                c.met[m] = true;
+            } else if (c.sums[m] >= r) {
+                c.met[m] = false;
+                c.decision = Decision.INFEASIBLE;
+                return;
+            } else {
+                allMet = false;
+            }
+        }
+        if (allMet) {
+            c.decision = Decision.FEASIBLE;
+        }
+    }
+
+    private StaffingReport report() {
+        Candidate best = null;
+        List<SimulationConfig> configs = new ArrayList<>();
+        List<Decision> decisions = new ArrayList<>();
+        List<SampleStatistics[]> values = new ArrayList<>();
+        for (Candidate c : this.candidates) {
+            if (best == null && c.decision == Decision.FEASIBLE) {
+                best = c;
+            }
+            configs.add(c.config);
+            decisions.add(c.decision);
+            values.add(c.values);
+        }
+        return new StaffingReport(best == null ? -1 : this.candidates.indexOf(best),
+            configs, decisions, values, this.metrics, this.bounds, this.replicationsRun);
+    }
+
+    /**
+     * A Candidate keeps track of the replications of one shop.
+     */
+    private static class Candidate {
+        private final SimulationConfig config;
+        private final double cost;
+        private final SampleStatistics[] values; // per constraint
+        private int replications = 0;
+        private final double[] sums; // of (Metric - bound)
+        private final double[] firstStageVariances;
+        private final Boolean[] met; // null while the constraint is open
+        private Decision decision = null; // not decided yet
+
+        Candidate(SimulationConfig config, double cost, int constraints) {
+            this.config = config;
+            this.cost = cost;
+            this.values = new SampleStatistics[constraints];
+            for (int m = 0; m < constraints; m++) {
+                this.values[m] = new SampleStatistics();
+            }
+            this.sums = new double[constraints];
+            this.firstStageVariances = new double[constraints];
+            this.met = new Boolean[constraints];
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package cs2030.simulator;
+
+import java.util.List;
+
+/**
+ * A StaffingReport tells which candidate shop a StaffingOptimizer picked, and
+ * what it decided about every candidate on the way.
+ */
+public class StaffingReport {
+
+    private final int best; // index of the pick, -1 if none is feasible
+    private final List<SimulationConfig> candidates; // in order of cost
+    private final List<StaffingOptimizer.Decision> decisions;
+    private final List<SampleStatistics[]> values; // per constraint
+    private final Metric[] metrics;
+    private final double[] bounds;
+    private final int replications;
+
+    StaffingReport(int best, List<SimulationConfig> candidates,
+                   List<StaffingOptimizer.Decision> decisions,
+                   List<SampleStatistics[]> values, Metric[] metrics, double[] bounds,
+                   int replications) {
+        this.best = best;
+        this.candidates = candidates;
+        this.decisions = decisions;
+        this.values = values;
+        this.metrics = metrics;
+        this.bounds = bounds;
+        this.replications = replications;
+    }
+
+    /**
+     * The cheapest candidate found to be feasible.
+     *
+     * @return the shop picked, null if no candidate is feasible.
+     */
+    public SimulationConfig getBest() {
+        return this.best < 0 ? null : this.candidates.get(this.best);
+    }
+
+    /**
+     * Whether the pick comes with the confidence guarantee, i.e. whether every
+     * cheaper candidate was found to be infeasible rather than left undecided
+     * when its budget ran out.
+     *
+     * @return true if no cheaper candidate is undecided.
+     */
+    public boolean isGuaranteed() {
+        int end = this.best < 0 ? this.candidates.size() : this.best;
+        for (int i = 0; i < end; i++) {
+            if (this.decisions.get(i) == StaffingOptimizer.Decision.UNDECIDED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * How many replications were run over all the candidates.
+     *
+     * @return the total number of replications.
+     */
+    public int getReplications() {
+        return this.replications;
+    }
+
+    /**
+     * One line per candidate, in order of cost, with its decision and the means of
+     * its Metrics, followed by the pick.
+     *
+     * @return String representation of the report.
+     */
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder();
+        for (int i = 0; i < this.candidates.size(); i++) {
+            SimulationConfig c = this.candidates.get(i);
+            SampleStatistics[] v = this.values.get(i);
+            res.append(c.getNumServers()).append(" servers, ")
+                .append(c.getNumSelfServers()).append(" self-checkouts, qmax ")
+                .append(c.getQmax()).append(": ").append(this.decisions.get(i));
+            if (v[0].getCount() > 0) {
+                res.append(" (");
+                for (int m = 0; m < this.metrics.length; m++) {
+                    res.append(this.metrics[m]).append(' ')
+                        .append(Customer.prettyPrint(v[m].getMean())).append(", ");
+                }
+                res.append("over ").append(v[0].getCount()).append(" replications)");
+            }
+            res.append('\n');
+        }
+        SimulationConfig pick = getBest();
+        if (pick == null) {
+            res.append("no candidate keeps ");
+            for (int m = 0; m < this.metrics.length; m++) {
+                res.append(m == 0 ? "" : " and ").append(this.metrics[m]).append(" under ")
+                    .append(Customer.prettyPrint(this.bounds[m]));
+            }
+        } else {
+            res.append("best: ").append(pick.getNumServers()).append(" servers, ")
+                .append(pick.getNumSelfServers()).append(" self-checkouts, qmax ")
+                .append(pick.getQmax());
+        }
+        res.append(isGuaranteed() ? "" : " (a cheaper candidate is undecided)")
+            .append("\nreplications: ").append(this.replications);
+        return res.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package cs2030.simulator;
+
+/**
+ * A SteadyStateEstimator estimates the long-run average waiting time out of one
+ * long run, instead of many short replications that all start empty and idle.
+ * The waiting times are taken in the order Customers get served. The warm-up
+ * period is detected with MSER-5 and deleted, and the confidence interval is
+ * built from the means of a fixed number of batches of what is left.
+ */
+public class SteadyStateEstimator {
+
+    static final int MSER_BATCH_SIZE = 5;
+    static final int DEFAULT_NUM_BATCHES = 20;
+
+    private final SimulationConfig config;
+    private final int numBatches;
+    private final double confidence;
+
+    /**
+     * Constructs an estimator using 20 batch means and 95% confidence.
+     *
+     * @param config the shop to be run, with enough arrivals for one long run.
+     */
+    public SteadyStateEstimator(SimulationConfig config) {
+        this(config, DEFAULT_NUM_BATCHES, ReplicationController.DEFAULT_CONFIDENCE);
+    }
+
+    /**
+     * Constructs an estimator.
+     *
+     * @param config     the shop to be run, with enough arrivals for one long run.
+     * @param numBatches how many batch means the interval is built from.
+     * @param confidence the confidence level of the interval, e.g. 0.95.
+     */
+    public SteadyStateEstimator(SimulationConfig config, int numBatches, double confidence) {
+        assert (numBatches > 1 && confidence > 0 && confidence < 1);
+        this.config = config;
+        this.numBatches = numBatches;
+        this.confidence = confidence;
+    }
+
+    /**
+     * Runs the shop once and analyses the waiting times.
+     *
+     * @return the steady-state estimate of the average waiting time.
+     */
+    public SteadyStateReport run() {
+        Manager manager = new Manager(this.config, false);
+        manager.getStatistics().keepWaitingTimes();
+        manager.operate();
+        return analyse(manager.getStatistics().getWaitingTimes());
+    }
+
+    /**
+     * Deletes the warm-up of a series of waiting times and builds the batch means
+     * confidence interval out of the rest.
+     *
+     * @param waits the waiting times in the order Customers got served.
+     * @return the steady-state estimate.
+     */
+    SteadyStateReport analyse(DoubleList waits) {
+        int warmup = mserTruncation(waits, MSER_BATCH_SIZE);
+        int batchSize = (waits.size() - warmup) / this.numBatches;
+        double[] means = new double[batchSize > 0 ? this.numBatches : 0];
+        SampleStatistics batchMeans = new SampleStatistics();
+        for (int b = 0; b < means.length; b++) {
+            double sum = 0;
+            int start = warmup + b * batchSize;
+            for (int i = start; i < start + batchSize; i++) {
+                sum += waits.get(i);
+            }
+            means[b] = sum / batchSize;
+            batchMeans.add(means[b]);
+        }
+        return new SteadyStateReport(waits.size(), warmup, batchSize, batchMeans,
+            lag1Correlation(means, batchMeans.getMean()), this.confidence);
+    }
+
+    /**
+     * MSER-m truncation point: the number of leading observations whose deletion
+     * minimises the squared standard error of the mean of the batches of size m
+     * that are left. Only the first half of the series is considered for deletion.
+     *
+     * @param xs the series of observations.
+     * @param m  the size of the batches, 5 for MSER-5.
+     * @return the number of leading observations to delete, a multiple of m.
+     */
+    static int mserTruncation(DoubleList xs, int m) {
+        int k = xs.size() / m;
+        if (k < 2) {
+            return 0;
+        }
+        double[] batches = new double[k];
+        for (int b = 0; b < k; b++) {
+            double sum = 0;
+            for (int i = b * m; i < (b + 1) * m; i++) {
+                sum += xs.get(i);
+            }
+            batches[b] = sum / m;
+        }
+        // walk backwards accumulating suffix sums, so each candidate costs O(1):
+        double sum = 0;
+        double sumSquares = 0;
+        int best = 0;
+        double bestStatistic = Double.MAX_VALUE;
+        for (int d = k - 1; d >= 0; d--) {
+            sum += batches[d];
+            sumSquares += batches[d] * batches[d];
+            int left = k - d;
+            if (d <= k / 2) {
+                double sse = sumSquares - sum * sum / left;
+                double statistic = sse / ((double) left * left);
+                if (statistic <= bestStatistic) { // ties go to the smaller deletion
+                    bestStatistic = statistic;
+                    best = d;
+                }
+            }
+        }
+        return best * m;
+    }
+
+    private static double lag1Correlation(double[] xs, double mean) {
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < xs.length; i++) {
+            variance += (xs[i] - mean) * (xs[i] - mean);
+            if (i > 0) {
+                covariance += (xs[i - 1] - mean) * (xs[i] - mean);
+            }
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+}
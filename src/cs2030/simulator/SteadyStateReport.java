@@ -0,0 +1,72 @@
+package cs2030.simulator;
+
+/**
+ * A SteadyStateReport holds the estimate of the long-run average waiting time of
+ * one long run, after the warm-up period has been deleted.
+ */
+public class SteadyStateReport {
+
+    private final int observations;
+    private final int warmup;
+    private final int batchSize;
+    private final SampleStatistics batchMeans;
+    private final double lag1Correlation;
+    private final double confidence;
+
+    SteadyStateReport(int observations, int warmup, int batchSize,
+                      SampleStatistics batchMeans, double lag1Correlation,
+                      double confidence) {
+        this.observations = observations;
+        this.warmup = warmup;
+        this.batchSize = batchSize;
+        this.batchMeans = batchMeans;
+        this.lag1Correlation = lag1Correlation;
+        this.confidence = confidence;
+    }
+
+    public int getObservations() {
+        return this.observations;
+    }
+
+    /**
+     * How many of the first Customers were deleted as the warm-up.
+     *
+     * @return the number of waiting times deleted.
+     */
+    public int getWarmup() {
+        return this.warmup;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public double getMeanWait() {
+        return this.batchMeans.getMean();
+    }
+
+    public double getHalfWidth() {
+        return this.batchMeans.halfWidth(this.confidence);
+    }
+
+    /**
+     * Lag-1 correlation of the batch means; a large value means the batches are
+     * too small for the interval to be trusted.
+     *
+     * @return the estimated lag-1 correlation.
+     */
+    public double getLag1Correlation() {
+        return this.lag1Correlation;
+    }
+
+    @Override
+    public String toString() {
+        return "steady-state average wait: " + Customer.prettyPrint(getMeanWait())
+                   + " +/- " + Customer.prettyPrint(getHalfWidth()) + "\n"
+                   + "warm-up deleted: " + this.warmup + " of " + this.observations
+                   + " customers\n"
+                   + "batches: " + this.batchMeans.getCount() + " of " + this.batchSize
+                   + " customers (lag-1 correlation "
+                   + Customer.prettyPrint(this.lag1Correlation) + ")";
+    }
+}
@@ -0,0 +1,511 @@
+package cs2030.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A SurrogateModel answers, in microseconds, what a Metric of a shop is expected
+ * to be anywhere in a box of (lambda, mu, numServers, qmax, pRest, pGreedy), by
+ * stochastic kriging (Ankenman, Nelson and Staum, 2010) over the replications of
+ * shops simulated at a set of design points, and says how uncertain the answer is.
+ * The expected Metric is modelled as a constant plus a Gaussian process with
+ * covariance tau^2 exp(-sum_k theta_k (x_k - x'_k)^2) over the box scaled to the
+ * unit cube, observed at each design point through the mean of its replications,
+ * whose own variance is estimated from them. tau^2 and the theta_k are fitted by
+ * maximum likelihood, with a pattern search over their logarithms.
+ * The first design points are a Latin hypercube. Further points are placed where
+ * the model is least sure of itself: at the one of many random candidates with
+ * the largest prediction variance. Every design point is replicated with seeds
+ * of its own, since common random numbers would correlate the noise that the
+ * model takes to be independent between points. Observations made elsewhere,
+ * e.g. by a sweep, can be added too.
+ * The other inputs, i.e. the seed, number of self-checkout servers, number of
+ * arrivals and rho, are those of the base shop, and all times are exponential.
+ */
+public class SurrogateModel {
+
+    static final String[] INPUTS = {"lambda", "mu", "numServers", "qmax", "pRest", "pGreedy"};
+    private static final int DIMENSIONS = INPUTS.length;
+    private static final int CANDIDATES = 200 * DIMENSIONS; // per point placed
+    private static final double REFIT_GROWTH = 1.25; // design grows this much between fits
+    private static final double MIN_LOG_THETA = Math.log(1e-3);
+    private static final double MAX_LOG_THETA = Math.log(1e3);
+
+    /**
+     * What the model expects a Metric to be at a point of the box.
+     */
+    public static class Estimate {
+        private final double mean;
+        private final double standardError;
+
+        Estimate(double mean, double standardError) {
+            this.mean = mean;
+            this.standardError = standardError;
+        }
+
+        public double getMean() {
+            return this.mean;
+        }
+
+        public double getStandardError() {
+            return this.standardError;
+        }
+
+        @Override
+        public String toString() {
+            return this.mean + " " + this.standardError;
+        }
+    }
+
+    private final SimulationConfig base;
+    private final double[] lower;
+    private final double[] upper;
+    private final Metric metric;
+    private final int replicationsPerPoint;
+    private final SplittableRandom random;
+    private int replicationsRun = 0;
+    private int nextReplication = 0; // the first seed not yet used by a design point
+
+    // the design points, scaled to the unit cube, with their observations:
+    private final List<double[]> points = new ArrayList<>();
+    private final DoubleList means = new DoubleList();
+    private final DoubleList noise = new DoubleList(); // the variances of the means
+
+    // the fitted model:
+    private double logTau2 = 0;
+    private final double[] logTheta = new double[DIMENSIONS];
+    private int pointsAtLastFit = 0;
+    private double[][] cholesky = new double[0][]; // of the covariance of the means
+    private double[] alpha = new double[0]; // covariance^-1 (means - beta)
+    private double[] ones = new double[0]; // cholesky^-1 (1, ..., 1)
+    private double onesPrecision = 1; // (1, ..., 1) covariance^-1 (1, ..., 1)
+    private double beta = 0;
+
+    /**
+     * Constructs a model with no design points yet.
+     *
+     * @param base                 the shop whose other inputs the design points keep.
+     * @param lower                the least lambda, mu, numServers, qmax, pRest
+     *                             and pGreedy of the box.
+     * @param upper                the greatest, in the same order.
+     * @param metric               the Metric to model.
+     * @param replicationsPerPoint how many replications to run at a design point.
+     * @throws IllegalArgumentException if the times of the base shop aren't exponential.
+     */
+    public SurrogateModel(SimulationConfig base, double[] lower, double[] upper,
+                          Metric metric, int replicationsPerPoint) {
+        if (!base.isMarkovian()) {
+            throw new IllegalArgumentException("not a plain shop: " + base);
+        }
+        assert (lower.length == DIMENSIONS && upper.length == DIMENSIONS);
+        assert (replicationsPerPoint >= 2 && lower[0] > 0 && lower[1] > 0);
+        assert (lower[2] >= 1 && lower[3] >= 0 && lower[4] >= 0 && upper[4] <= 1);
+        assert (lower[5] >= 0 && upper[5] <= 1);
+        this.base = base;
+        this.lower = lower.clone();
+        this.upper = upper.clone();
+        this.metric = metric;
+        this.replicationsPerPoint = replicationsPerPoint;
+        this.random = new SplittableRandom(base.getSeed());
+        for (int k = 0; k < DIMENSIONS; k++) {
+            this.logTheta[k] = Math.log(2);
+        }
+    }
+
+    /**
+     * Simulates a Latin hypercube of design points and fits the model to them.
+     *
+     * @param numPoints how many points the hypercube has.
+     */
+    public void sample(int numPoints) {
+        int[][] strata = new int[DIMENSIONS][numPoints];
+        for (int k = 0; k < DIMENSIONS; k++) {
+            for (int i = 0; i < numPoints; i++) { // shuffle the strata of each input
+                int j = this.random.nextInt(i + 1);
+                strata[k][i] = strata[k][j];
+                strata[k][j] = i;
+            }
+        }
+        List<double[]> design = new ArrayList<>();
+        for (int i = 0; i < numPoints; i++) {
+            double[] u = new double[DIMENSIONS];
+            for (int k = 0; k < DIMENSIONS; k++) {
+                u[k] = (strata[k][i] + this.random.nextDouble()) / numPoints;
+            }
+            design.add(u);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors());
+        try {
+            for (double[] u : design) {
+                simulate(pool, u);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        fit();
+    }
+
+    /**
+     * Adds design points one at a time where the model is least certain, and
+     * refits the model after each, until it is certain enough everywhere.
+     *
+     * @param maxPoints           the most points to add.
+     * @param targetStandardError the largest standard error to accept among the
+     *                            candidates for the next point.
+     * @return how many points were added.
+     * @throws IllegalStateException if the model has no design points yet.
+     */
+    public int refine(int maxPoints, double targetStandardError) {
+        checkSampled();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors());
+        try {
+            for (int p = 0; p < maxPoints; p++) {
+                double[] best = null;
+                double largest = -1;
+                for (int c = 0; c < CANDIDATES; c++) {
+                    double[] u = snap(randomPoint());
+                    double variance = predictScaled(u)[1];
+                    if (variance > largest) {
+                        largest = variance;
+                        best = u;
+                    }
+                }
+                if (largest <= targetStandardError * targetStandardError) {
+                    return p;
+                }
+                simulate(pool, best);
+                fit();
+            }
+            return maxPoints;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds a design point observed elsewhere, and refits the model.
+     *
+     * @param config       the shop observed, inside the box.
+     * @param replications the Metric over its replications, at least 2.
+     */
+    public void observe(SimulationConfig config, SampleStatistics replications) {
+        assert replications.getCount() >= 2;
+        add(scale(new double[] {config.getLambda(), config.getMu(), config.getNumServers(),
+            config.getQmax(), config.getPRest(), config.getPGreedy()}), replications);
+        fit();
+    }
+
+    /**
+     * What the model expects the Metric to be at a point of the box.
+     *
+     * @return the expected Metric, with the standard error of the model there.
+     * @throws IllegalStateException if the model has no design points yet.
+     */
+    public Estimate predict(double lambda, double mu, int numServers, int qmax,
+                            double pRest, double pGreedy) {
+        checkSampled();
+        double[] prediction = predictScaled(
+            scale(new double[] {lambda, mu, numServers, qmax, pRest, pGreedy}));
+        return new Estimate(prediction[0], Math.sqrt(prediction[1]));
+    }
+
+    private void checkSampled() {
+        if (this.points.isEmpty()) {
+            throw new IllegalStateException("the model has no design points yet");
+        }
+    }
+
+    public int getNumPoints() {
+        return this.points.size();
+    }
+
+    public int getReplicationsRun() {
+        return this.replicationsRun;
+    }
+
+    /**
+     * The shop at a point of the box.
+     *
+     * @param u the point, scaled to the unit cube.
+     * @return the base shop with the inputs of the point.
+     */
+    SimulationConfig configAt(double[] u) {
+        double[] x = new double[DIMENSIONS];
+        for (int k = 0; k < DIMENSIONS; k++) {
+            x[k] = this.lower[k] + u[k] * (this.upper[k] - this.lower[k]);
+        }
+        return new SimulationConfig(this.base.getSeed(), (int) Math.round(x[2]),
+            this.base.getNumSelfServers(), (int) Math.round(x[3]),
+            this.base.getNumArrivalEvents(), x[0], x[1], this.base.getRho(), x[4], x[5]);
+    }
+
+    private double[] scale(double[] x) {
+        double[] u = new double[DIMENSIONS];
+        for (int k = 0; k < DIMENSIONS; k++) {
+            double width = this.upper[k] - this.lower[k];
+            u[k] = width > 0 ? (x[k] - this.lower[k]) / width : 0;
+        }
+        return u;
+    }
+
+    /**
+     * Moves a point to where the integer inputs are whole numbers.
+     */
+    private double[] snap(double[] u) {
+        for (int k = 2; k <= 3; k++) {
+            double width = this.upper[k] - this.lower[k];
+            if (width > 0) {
+                u[k] = (Math.round(this.lower[k] + u[k] * width) - this.lower[k]) / width;
+            }
+        }
+        return u;
+    }
+
+    private double[] randomPoint() {
+        double[] u = new double[DIMENSIONS];
+        for (int k = 0; k < DIMENSIONS; k++) {
+            u[k] = this.random.nextDouble();
+        }
+        return u;
+    }
+
+    private void simulate(ExecutorService pool, double[] u) {
+        snap(u);
+        SampleStatistics values = new SampleStatistics();
+        for (RunStatistics stats : ReplicationController.runBatch(pool, configAt(u),
+            this.nextReplication, this.replicationsPerPoint)) {
+            values.add(this.metric.of(stats));
+        }
+        this.nextReplication += this.replicationsPerPoint;
+        this.replicationsRun += this.replicationsPerPoint;
+        add(u, values);
+    }
+
+    private void add(double[] u, SampleStatistics values) {
+        this.points.add(u);
+        this.means.add(values.getMean());
+        this.noise.add(values.getVariance() / values.getCount());
+    }
+
+    /**
+     * Refits tau^2 and the theta_k once the design has grown enough since they
+     * were last fitted, and factorises the covariance of the means.
+     */
+    private void fit() {
+        int n = this.points.size();
+        if (n >= REFIT_GROWTH * this.pointsAtLastFit) {
+            fitParameters();
+            this.pointsAtLastFit = n;
+        }
+        if (Double.isInfinite(likelihood(this.logTau2, this.logTheta, true))) {
+            throw new IllegalStateException("cannot factorise the covariance of the means");
+        }
+    }
+
+    /**
+     * Maximises the likelihood over the logarithms of tau^2 and the theta_k, by
+     * a pattern search that halves its step whenever no move improves on it.
+     */
+    private void fitParameters() {
+        SampleStatistics spread = new SampleStatistics();
+        for (int i = 0; i < this.means.size(); i++) {
+            spread.add(this.means.get(i));
+        }
+        double variance = Math.max(spread.getVariance(), 1e-12);
+        double minLogTau2 = Math.log(variance * 1e-4);
+        double maxLogTau2 = Math.log(variance * 1e2);
+        double[] best = new double[DIMENSIONS + 1]; // log tau^2, then log theta_k
+        best[0] = Math.min(Math.max(this.logTau2, minLogTau2), maxLogTau2);
+        System.arraycopy(this.logTheta, 0, best, 1, DIMENSIONS);
+        double bestNll = nll(best);
+        for (double step = 1; step >= 0.05; ) {
+            boolean improved = false;
+            for (int j = 0; j <= DIMENSIONS; j++) {
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    double[] tried = best.clone();
+                    tried[j] += sign * step;
+                    if (j == 0 ? tried[j] < minLogTau2 || tried[j] > maxLogTau2
+                            : tried[j] < MIN_LOG_THETA || tried[j] > MAX_LOG_THETA) {
+                        continue;
+                    }
+                    double triedNll = nll(tried);
+                    if (triedNll < bestNll) {
+                        best = tried;
+                        bestNll = triedNll;
+                        improved = true;
+                    }
+                }
+            }
+            if (!improved) {
+                step /= 2;
+            }
+        }
+        this.logTau2 = best[0];
+        System.arraycopy(best, 1, this.logTheta, 0, DIMENSIONS);
+    }
+
+    private double nll(double[] parameters) {
+        double[] logTheta = new double[DIMENSIONS];
+        System.arraycopy(parameters, 1, logTheta, 0, DIMENSIONS);
+        return likelihood(parameters[0], logTheta, false);
+    }
+
+    /**
+     * The negative log-likelihood of the means, up to a constant, with the
+     * constant beta at its generalised least squares estimate.
+     *
+     * @param keep whether to keep the factorisation as that of the model.
+     * @return the negative log-likelihood, infinite if the covariance isn't
+     *     positive definite.
+     */
+    private double likelihood(double logTau2, double[] logTheta, boolean keep) {
+        int n = this.points.size();
+        double tau2 = Math.exp(logTau2);
+        double[] theta = new double[DIMENSIONS];
+        for (int k = 0; k < DIMENSIONS; k++) {
+            theta[k] = Math.exp(logTheta[k]);
+        }
+        double[][] l = new double[n][];
+        for (int i = 0; i < n; i++) { // the lower triangle of the covariance
+            l[i] = new double[i + 1];
+            for (int j = 0; j < i; j++) {
+                l[i][j] = tau2 * correlation(theta, this.points.get(i), this.points.get(j));
+            }
+            l[i][i] = tau2 * (1 + 1e-10) + this.noise.get(i);
+        }
+        for (int i = 0; i < n; i++) { // Cholesky, in place
+            for (int j = 0; j <= i; j++) {
+                double sum = l[i][j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+                if (i == j) {
+                    if (!(sum > 0)) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    l[i][i] = Math.sqrt(sum);
+                } else {
+                    l[i][j] = sum / l[j][j];
+                }
+            }
+        }
+        double[] y = new double[n];
+        double[] one = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = this.means.get(i);
+            one[i] = 1;
+        }
+        double[] z = forward(l, y);
+        double[] u = forward(l, one);
+        double uu = 0;
+        double uz = 0;
+        double logDet = 0;
+        for (int i = 0; i < n; i++) {
+            uu += u[i] * u[i];
+            uz += u[i] * z[i];
+            logDet += 2 * Math.log(l[i][i]);
+        }
+        double b = uz / uu;
+        double quadratic = 0;
+        for (int i = 0; i < n; i++) {
+            z[i] -= b * u[i];
+            quadratic += z[i] * z[i];
+        }
+        if (keep) {
+            this.cholesky = l;
+            this.ones = u;
+            this.onesPrecision = uu;
+            this.beta = b;
+            this.alpha = backward(l, z);
+        }
+        return 0.5 * (logDet + quadratic);
+    }
+
+    private static double correlation(double[] theta, double[] a, double[] b) {
+        double distance = 0;
+        for (int k = 0; k < DIMENSIONS; k++) {
+            double d = a[k] - b[k];
+            distance += theta[k] * d * d;
+        }
+        return Math.exp(-distance);
+    }
+
+    /**
+     * Solves L x = b for a lower triangular L.
+     */
+    private static double[] forward(double[][] l, double[] b) {
+        double[] x = new double[b.length];
+        for (int i = 0; i < b.length; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i][k] * x[k];
+            }
+            x[i] = sum / l[i][i];
+        }
+        return x;
+    }
+
+    /**
+     * Solves L^T x = b for a lower triangular L.
+     */
+    private static double[] backward(double[][] l, double[] b) {
+        double[] x = b.clone();
+        for (int i = b.length - 1; i >= 0; i--) {
+            x[i] /= l[i][i];
+            for (int k = 0; k < i; k++) {
+                x[k] -= l[i][k] * x[i];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * The kriging predictor and its mean squared error at a point, accounting
+     * for beta being estimated.
+     *
+     * @param u the point, scaled to the unit cube.
+     * @return the prediction and its variance.
+     */
+    private double[] predictScaled(double[] u) {
+        int n = this.points.size();
+        double tau2 = Math.exp(this.logTau2);
+        double[] theta = new double[DIMENSIONS];
+        for (int k = 0; k < DIMENSIONS; k++) {
+            theta[k] = Math.exp(this.logTheta[k]);
+        }
+        double[] covariances = new double[n];
+        double mean = this.beta;
+        for (int i = 0; i < n; i++) {
+            covariances[i] = tau2 * correlation(theta, u, this.points.get(i));
+            mean += covariances[i] * this.alpha[i];
+        }
+        double[] w = forward(this.cholesky, covariances);
+        double ww = 0;
+        double uw = 0;
+        for (int i = 0; i < n; i++) {
+            ww += w[i] * w[i];
+            uw += this.ones[i] * w[i];
+        }
+        double variance = tau2 - ww + (1 - uw) * (1 - uw) / this.onesPrecision;
+        return new double[] {mean, Math.max(variance, 0)};
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder().append("surrogate of ").append(this.metric)
+                                .append(" over ").append(getNumPoints()).append(" points, ")
+                                .append(this.replicationsRun).append(" replications: tau^2 ")
+                                .append(Customer.prettyPrint(Math.exp(this.logTau2)))
+                                .append(", theta");
+        for (int k = 0; k < DIMENSIONS; k++) {
+            res.append(' ').append(INPUTS[k]).append(' ')
+                .append(Customer.prettyPrint(Math.exp(this.logTheta[k])));
+        }
+        return res.toString();
+    }
+}
@@ -0,0 +1,226 @@
+package cs2030.simulator;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A TimeSeriesRecorder keeps the number of Customers waiting, of servers busy
+ * serving and of human servers resting over the simulated time, as fixed-width
+ * buckets of their minimum, maximum and time-weighted mean.
+ * The Manager reports the new levels whenever one of them changes. Memory is
+ * capped however long the run: once the run outgrows the buckets, neighbouring
+ * buckets are merged pairwise and the bucket width doubles.
+ * The buckets can be exported as CSV, or in a compact binary format: the int
+ * BINARY_MAGIC, the int number of buckets, the double bucket width, then per
+ * bucket and series the int minimum, int maximum and double mean.
+ */
+public class TimeSeriesRecorder {
+
+    static final int BINARY_MAGIC = 0x54535231; // "TSR1"
+    static final String[] SERIES = {"waiting", "busy", "resting"};
+    private static final int NUM_SERIES = SERIES.length;
+
+    private final int maxBuckets;
+    private double bucketWidth;
+    private int numBuckets = 0;
+    // per bucket and series, at [bucket * NUM_SERIES + series]:
+    private final int[] minimums;
+    private final int[] maximums;
+    private final double[] integrals; // level x time
+
+    private final int[] levels = new int[NUM_SERIES]; // since lastTime
+    private double lastTime = 0;
+
+    /**
+     * Constructs a recorder, starting at time 0 with every level 0.
+     *
+     * @param bucketWidth the initial width of the buckets.
+     * @param maxBuckets  the most buckets to keep, an even number.
+     */
+    TimeSeriesRecorder(double bucketWidth, int maxBuckets) {
+        assert (bucketWidth > 0 && maxBuckets >= 2 && maxBuckets % 2 == 0);
+        this.bucketWidth = bucketWidth;
+        this.maxBuckets = maxBuckets;
+        this.minimums = new int[maxBuckets * NUM_SERIES];
+        this.maximums = new int[maxBuckets * NUM_SERIES];
+        this.integrals = new double[maxBuckets * NUM_SERIES];
+    }
+
+    /**
+     * Records the levels holding from the given time onwards.
+     *
+     * @param time    when the levels changed, no earlier than the last change.
+     * @param waiting the number of Customers waiting.
+     * @param busy    the number of servers serving.
+     * @param resting the number of human servers resting.
+     */
+    void record(double time, int waiting, int busy, int resting) {
+        advance(time);
+        this.levels[0] = waiting;
+        this.levels[1] = busy;
+        this.levels[2] = resting;
+    }
+
+    /**
+     * Closes the series at the end of the run.
+     *
+     * @param endTime when the run ended.
+     */
+    void finish(double endTime) {
+        advance(endTime);
+    }
+
+    /**
+     * Adds the current levels over the time since the last change to the buckets
+     * that time falls into.
+     */
+    private void advance(double time) {
+        double t = this.lastTime;
+        while (t < time) {
+            int bucket = (int) (t / this.bucketWidth);
+            while (bucket >= this.maxBuckets) {
+                mergeBuckets();
+                bucket = (int) (t / this.bucketWidth);
+            }
+            for (; this.numBuckets <= bucket; this.numBuckets++) { // open new buckets
+                for (int s = 0; s < NUM_SERIES; s++) {
+                    this.minimums[this.numBuckets * NUM_SERIES + s] = Integer.MAX_VALUE;
+                    this.maximums[this.numBuckets * NUM_SERIES + s] = Integer.MIN_VALUE;
+                }
+            }
+            double until = Math.min(time, (bucket + 1) * this.bucketWidth);
+            if (until <= t) { // rounding at the bucket edge
+                until = Math.min(time, Math.nextUp(t));
+            }
+            for (int s = 0; s < NUM_SERIES; s++) {
+                int i = bucket * NUM_SERIES + s;
+                this.minimums[i] = Math.min(this.minimums[i], this.levels[s]);
+                this.maximums[i] = Math.max(this.maximums[i], this.levels[s]);
+                this.integrals[i] += this.levels[s] * (until - t);
+            }
+            t = until;
+        }
+        this.lastTime = Math.max(this.lastTime, time);
+    }
+
+    /**
+     * Halves the number of buckets by merging every pair, doubling their width.
+     */
+    private void mergeBuckets() {
+        int merged = (this.numBuckets + 1) / 2;
+        for (int b = 0; b < merged; b++) {
+            for (int s = 0; s < NUM_SERIES; s++) {
+                int to = b * NUM_SERIES + s;
+                int left = 2 * b * NUM_SERIES + s;
+                int right = left + NUM_SERIES;
+                boolean hasRight = 2 * b + 1 < this.numBuckets;
+                this.minimums[to] = hasRight
+                                        ? Math.min(this.minimums[left], this.minimums[right])
+                                        : this.minimums[left];
+                this.maximums[to] = hasRight
+                                        ? Math.max(this.maximums[left], this.maximums[right])
+                                        : this.maximums[left];
+                this.integrals[to] = this.integrals[left]
+                                         + (hasRight ? this.integrals[right] : 0);
+            }
+        }
+        for (int i = merged * NUM_SERIES; i < this.numBuckets * NUM_SERIES; i++) {
+            this.integrals[i] = 0;
+        }
+        this.numBuckets = merged;
+        this.bucketWidth *= 2;
+    }
+
+    public int getNumBuckets() {
+        return this.numBuckets;
+    }
+
+    public double getBucketWidth() {
+        return this.bucketWidth;
+    }
+
+    /**
+     * The minimum of a series over a bucket.
+     *
+     * @param bucket the index of the bucket.
+     * @param series the index of the series, in the order of SERIES.
+     * @return the smallest level in the bucket.
+     */
+    public int getMinimum(int bucket, int series) {
+        return this.minimums[bucket * NUM_SERIES + series];
+    }
+
+    /**
+     * The maximum of a series over a bucket.
+     *
+     * @param bucket the index of the bucket.
+     * @param series the index of the series, in the order of SERIES.
+     * @return the largest level in the bucket.
+     */
+    public int getMaximum(int bucket, int series) {
+        return this.maximums[bucket * NUM_SERIES + series];
+    }
+
+    /**
+     * The time-weighted mean of a series over a bucket, or over the part of the
+     * last bucket that the run lasted.
+     *
+     * @param bucket the index of the bucket.
+     * @param series the index of the series, in the order of SERIES.
+     * @return the mean level in the bucket.
+     */
+    public double getMean(int bucket, int series) {
+        double start = bucket * this.bucketWidth;
+        double end = Math.min(this.lastTime, start + this.bucketWidth);
+        return end > start ? this.integrals[bucket * NUM_SERIES + series] / (end - start) : 0;
+    }
+
+    /**
+     * Writes the buckets as CSV, with a header and one row per bucket.
+     *
+     * @param out where the CSV goes, which is flushed but not closed.
+     * @throws IOException if the CSV can't be written.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder row = new StringBuilder("start,end");
+        for (String name : SERIES) {
+            row.append(',').append(name).append("_min,").append(name).append("_max,")
+                .append(name).append("_mean");
+        }
+        out.write(row.append('\n').toString());
+        for (int b = 0; b < this.numBuckets; b++) {
+            row.setLength(0);
+            row.append(b * this.bucketWidth).append(',')
+                .append(Math.min(this.lastTime, (b + 1) * this.bucketWidth));
+            for (int s = 0; s < NUM_SERIES; s++) {
+                row.append(',').append(getMinimum(b, s)).append(',')
+                    .append(getMaximum(b, s)).append(',').append(getMean(b, s));
+            }
+            out.write(row.append('\n').toString());
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the buckets in the compact binary format.
+     *
+     * @param out where the buckets go, which is flushed but not closed.
+     * @throws IOException if the buckets can't be written.
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(this.numBuckets);
+        data.writeDouble(this.bucketWidth);
+        for (int b = 0; b < this.numBuckets; b++) {
+            for (int s = 0; s < NUM_SERIES; s++) {
+                data.writeInt(getMinimum(b, s));
+                data.writeInt(getMaximum(b, s));
+                data.writeDouble(getMean(b, s));
+            }
+        }
+        data.flush();
+    }
+}
@@ -0,0 +1,51 @@
+package cs2030.simulator;
+
+/**
+ * A ValidationReport compares the replications of a plain shop against the exact
+ * AnalyticSolution, metric by metric.
+ */
+public class ValidationReport {
+
+    private final AnalyticSolution solution;
+    private final ReplicationReport replications;
+    private final double tolerance;
+
+    ValidationReport(AnalyticSolution solution, ReplicationReport replications,
+                     double tolerance) {
+        this.solution = solution;
+        this.replications = replications;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Whether both the average wait and the fraction that left agree.
+     *
+     * @return true if the simulator agrees with the AnalyticSolution.
+     */
+    public boolean passed() {
+        return agrees(Metric.AVERAGE_WAIT, this.solution.getExpectedWait())
+                   && agrees(Metric.FRACTION_LEFT, this.solution.getBlockingProbability());
+    }
+
+    private boolean agrees(Metric metric, double expected) {
+        return Math.abs(this.replications.getMean(metric) - expected)
+                   <= this.replications.getHalfWidth(metric)
+                          + this.tolerance * Math.abs(expected);
+    }
+
+    private String line(Metric metric, double expected) {
+        return metric + ": simulated " + String.format("%.6f", this.replications.getMean(metric))
+                   + " +/- " + String.format("%.6f", this.replications.getHalfWidth(metric))
+                   + ", analytic " + String.format("%.6f", expected)
+                   + (agrees(metric, expected) ? " ok" : " MISMATCH") + "\n";
+    }
+
+    @Override
+    public String toString() {
+        return line(Metric.AVERAGE_WAIT, this.solution.getExpectedWait())
+                   + line(Metric.FRACTION_LEFT, this.solution.getBlockingProbability())
+                   + "replications: " + this.replications.getReplications() + "\n"
+                   + (passed() ? "PASSED" : "FAILED") + " against "
+                   + (this.solution.isExact() ? "exact" : "approximate") + " solution";
+    }
+}
@@ -0,0 +1,269 @@
+package cs2030.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A WorkerPool runs simulations in separate worker JVMs on the same machine, so
+ * that large runs do not share one heap and its garbage collection pauses.
+ * The coordinator spawns the workers and talks to each of them over its stdin
+ * and stdout pipes: it sends work units (a SimulationConfig, seed included) and
+ * gets back compact result records. Work units are dealt out round-robin to one
+ * deque per worker; a worker takes from the front of its own deque and, once it
+ * runs dry, steals from the back of the fullest other deque. A worker that
+ * crashes is restarted and the units it had in flight are retried, up to
+ * MAX_ATTEMPTS times each.
+ */
+public class WorkerPool {
+
+    static final int MAX_ATTEMPTS = 3;
+    private static final int IN_FLIGHT = 2; // units per worker, to hide the pipe latency
+    private static final int SHUT_DOWN = -1;
+
+    private final int numWorkers;
+
+    /**
+     * Constructs a pool of worker JVMs, which are only spawned while running.
+     *
+     * @param numWorkers how many worker JVMs to run at the same time.
+     */
+    public WorkerPool(int numWorkers) {
+        assert numWorkers > 0;
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Runs every work unit on the workers, without keeping their logs.
+     *
+     * @param units the shops to be run, each with its own seed.
+     * @return the statistics of every unit, in the same order as the units.
+     * @throws IllegalStateException if a unit keeps crashing its workers.
+     * @throws IllegalArgumentException if a unit draws other than exponential
+     *     times or has priority classes, which can't be sent to the workers.
+     */
+    public RunStatistics[] run(List<SimulationConfig> units) {
+        for (SimulationConfig unit : units) {
+            if (!unit.isMarkovian()) {
+                throw new IllegalArgumentException("cannot send distributions or classes: "
+                                                       + unit);
+            }
+        }
+        RunStatistics[] results = new RunStatistics[units.size()];
+        AtomicIntegerArray attempts = new AtomicIntegerArray(units.size());
+        List<ConcurrentLinkedDeque<Integer>> deques = new ArrayList<>();
+        for (int w = 0; w < this.numWorkers; w++) {
+            deques.add(new ConcurrentLinkedDeque<>());
+        }
+        for (int u = 0; u < units.size(); u++) {
+            deques.get(u % this.numWorkers).addLast(u);
+        }
+        Coordinator[] coordinators = new Coordinator[this.numWorkers];
+        Thread[] threads = new Thread[this.numWorkers];
+        for (int w = 0; w < this.numWorkers; w++) {
+            coordinators[w] = new Coordinator(w, units, deques, attempts, results);
+            threads[w] = new Thread(coordinators[w], "worker-" + w);
+            threads[w].start();
+        }
+        try {
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("worker pool was interrupted", e);
+        }
+        for (Coordinator c : coordinators) {
+            if (c.failure != null) {
+                throw new IllegalStateException(c.failure);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * A Coordinator drives one worker JVM from a thread of the coordinating process.
+     */
+    private static class Coordinator implements Runnable {
+        private final int id;
+        private final List<SimulationConfig> units;
+        private final List<ConcurrentLinkedDeque<Integer>> deques;
+        private final AtomicIntegerArray attempts;
+        private final RunStatistics[] results;
+        private volatile String failure = null;
+
+        Coordinator(int id, List<SimulationConfig> units,
+                    List<ConcurrentLinkedDeque<Integer>> deques,
+                    AtomicIntegerArray attempts, RunStatistics[] results) {
+            this.id = id;
+            this.units = units;
+            this.deques = deques;
+            this.attempts = attempts;
+            this.results = results;
+        }
+
+        @Override
+        public void run() {
+            Deque<Integer> inFlight = new ArrayDeque<>();
+            Process worker = null;
+            try {
+                worker = spawn();
+                DataOutputStream toWorker = outputOf(worker);
+                DataInputStream fromWorker = inputOf(worker);
+                while (true) {
+                    try {
+                        Integer next;
+                        while (inFlight.size() < IN_FLIGHT && (next = take()) != null) {
+                            inFlight.addLast(next);
+                            send(toWorker, next, this.units.get(next));
+                        }
+                        toWorker.flush();
+                        if (inFlight.isEmpty()) {
+                            break;
+                        }
+                        int unit = fromWorker.readInt();
+                        this.results[unit] = receive(fromWorker);
+                        inFlight.remove(unit);
+                    } catch (IOException e) { // the worker died, retry what it had:
+                        worker.destroyForcibly();
+                        while (!inFlight.isEmpty()) {
+                            int unit = inFlight.removeLast();
+                            if (this.attempts.incrementAndGet(unit) >= MAX_ATTEMPTS) {
+                                this.failure = "work unit " + unit + " crashed its worker "
+                                                   + MAX_ATTEMPTS + " times: "
+                                                   + this.units.get(unit);
+                                return;
+                            }
+                            this.deques.get(this.id).addFirst(unit);
+                        }
+                        worker = spawn();
+                        toWorker = outputOf(worker);
+                        fromWorker = inputOf(worker);
+                    }
+                }
+                toWorker.writeInt(SHUT_DOWN);
+                toWorker.flush();
+                worker.waitFor();
+            } catch (IOException e) {
+                this.failure = "cannot run worker " + this.id + ": " + e.getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.failure = "worker " + this.id + " was interrupted";
+            } finally {
+                if (worker != null) {
+                    worker.destroyForcibly();
+                }
+            }
+        }
+
+        /**
+         * Takes the next unit from the front of this worker's own deque, else
+         * steals one from the back of the fullest deque.
+         *
+         * @return the unit to run next, null if there is none left.
+         */
+        private Integer take() {
+            Integer unit = this.deques.get(this.id).pollFirst();
+            while (unit == null) {
+                ConcurrentLinkedDeque<Integer> victim = null;
+                int most = 0;
+                for (ConcurrentLinkedDeque<Integer> d : this.deques) {
+                    int size = d.size();
+                    if (size > most) {
+                        most = size;
+                        victim = d;
+                    }
+                }
+                if (victim == null) {
+                    return null;
+                }
+                unit = victim.pollLast();
+            }
+            return unit;
+        }
+    }
+
+    /*                    WORKER SIDE                        */
+
+    /**
+     * Runs a worker: reads work units from stdin until told to shut down, and
+     * writes a result record to stdout for each of them.
+     *
+     * @param args unused.
+     * @throws IOException if the coordinator goes away.
+     */
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        try {
+            for (int unit = in.readInt(); unit != SHUT_DOWN; unit = in.readInt()) {
+                SimulationConfig config = new SimulationConfig(in.readInt(), in.readInt(),
+                    in.readInt(), in.readInt(), in.readInt(), in.readDouble(),
+                    in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+                Manager manager = new Manager(config, false);
+                manager.operate();
+                RunStatistics stats = manager.getStatistics();
+                out.writeInt(unit);
+                out.writeInt(stats.customersEntered);
+                out.writeInt(stats.customersServed);
+                out.writeInt(stats.customersLeft);
+                out.writeDouble(stats.totalWaitingTime);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // the coordinator has gone away, nothing left to do
+        }
+    }
+
+    /*                    PROTOCOL                           */
+    private static Process spawn() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin"
+                          + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            WorkerPool.class.getName())
+                   .redirectError(ProcessBuilder.Redirect.INHERIT)
+                   .start();
+    }
+
+    private static DataOutputStream outputOf(Process worker) {
+        return new DataOutputStream(new BufferedOutputStream(worker.getOutputStream()));
+    }
+
+    private static DataInputStream inputOf(Process worker) {
+        return new DataInputStream(new BufferedInputStream(worker.getInputStream()));
+    }
+
+    private static void send(DataOutputStream out, int unit, SimulationConfig c)
+        throws IOException {
+        out.writeInt(unit);
+        out.writeInt(c.getSeed());
+        out.writeInt(c.getNumServers());
+        out.writeInt(c.getNumSelfServers());
+        out.writeInt(c.getQmax());
+        out.writeInt(c.getNumArrivalEvents());
+        out.writeDouble(c.getLambda());
+        out.writeDouble(c.getMu());
+        out.writeDouble(c.getRho());
+        out.writeDouble(c.getPRest());
+        out.writeDouble(c.getPGreedy());
+    }
+
+    private static RunStatistics receive(DataInputStream in) throws IOException {
+        RunStatistics stats = new RunStatistics();
+        stats.customersEntered = in.readInt();
+        stats.customersServed = in.readInt();
+        stats.customersLeft = in.readInt();
+        stats.totalWaitingTime = in.readDouble();
+        return stats;
+    }
+}
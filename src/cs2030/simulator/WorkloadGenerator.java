@@ -0,0 +1,84 @@
+package cs2030.simulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The WorkloadGenerator writes synthetic scenario files for benchmarking, far
+ * larger than the sample inputs: from 10^3 to 10^9 customers, from 1 to 10^4
+ * servers, at low and high utilization, and with plain, rest-heavy and
+ * greedy-heavy mixes of servers and customers. Each scenario file holds the ten
+ * usual inputs, so it can be fed to Main as it is, and is named after its
+ * scenario, e.g. "c1e5-s100-high-greedy.in".
+ * Run it as "java -cp classes cs2030.simulator.WorkloadGenerator directory".
+ */
+public class WorkloadGenerator {
+
+    static final int[] CUSTOMER_EXPONENTS = {3, 5, 7, 9};
+    static final int[] SERVER_EXPONENTS = {0, 1, 2, 4};
+    static final String[] UTILIZATIONS = {"low", "high"};
+    static final String[] MIXES = {"plain", "rest", "greedy"};
+    private static final int SEED = 2030;
+    private static final int QMAX = 10;
+    private static final double MU = 1.0;
+    private static final double RHO = 1.0;
+
+    private WorkloadGenerator() {
+    }
+
+    /**
+     * Writes every scenario into the given directory.
+     *
+     * @param args the directory to write the scenario files to.
+     * @throws IOException if a file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "workloads");
+        Files.createDirectories(directory);
+        int written = 0;
+        for (int c : CUSTOMER_EXPONENTS) {
+            for (int s : SERVER_EXPONENTS) {
+                for (String utilization : UTILIZATIONS) {
+                    for (String mix : MIXES) {
+                        SimulationConfig config = scenario(c, s, utilization, mix);
+                        Path file = directory.resolve(
+                            "c1e" + c + "-s" + (int) Math.pow(10, s) + "-" + utilization
+                                + "-" + mix + ".in");
+                        Files.write(file, (config + "\n").getBytes());
+                        written++;
+                    }
+                }
+            }
+        }
+        System.out.println(written + " scenarios written to " + directory);
+    }
+
+    /**
+     * Builds a scenario. A tenth of the servers, rounded down, are self-checkout
+     * servers. The arrival rate is set for the utilization of
+     * the servers, counting the time the human servers spend resting.
+     *
+     * @param customerExponent the shop sees 10^customerExponent customers.
+     * @param serverExponent   the shop has 10^serverExponent servers.
+     * @param utilization      "low" for 50% busy, "high" for 95% busy.
+     * @param mix              "plain", "rest" for servers resting after half the
+     *                         customers, or "greedy" for 80% greedy customers.
+     * @return the scenario.
+     */
+    static SimulationConfig scenario(int customerExponent, int serverExponent,
+                                     String utilization, String mix) {
+        int servers = (int) Math.pow(10, serverExponent);
+        int selfServers = servers / 10;
+        int humanServers = servers - selfServers;
+        double pRest = mix.equals("rest") ? 0.5 : 0.1;
+        double pGreedy = mix.equals("greedy") ? 0.8 : 0.1;
+        // a human server is away for a rest of mean 1 / RHO after a pRest of services:
+        double humanCapacity = humanServers * MU / (1 + pRest * MU / RHO);
+        double capacity = humanCapacity + selfServers * MU;
+        double load = utilization.equals("high") ? 0.95 : 0.5;
+        return new SimulationConfig(SEED, humanServers, selfServers, QMAX,
+            (int) Math.pow(10, customerExponent), load * capacity, MU, RHO, pRest, pGreedy);
+    }
+}